@@ -191,6 +191,12 @@ public class EmulatedItemTreePaneController<T extends EmulatedItem<T>> extends T
         treeView.endResetOperation();
     }
     
+    public void appendItems(List<T> emulatedItems) {
+        treeView.beginTreeWiseOperation();
+        TreeTableDataFiller.append(treeView, emulatedItems, mustFlatten);
+        treeView.endTreeWiseOperation();
+    }
+    
     public void setFolderViewType(Map<SortableTreeItem<T>, List<String>> folderViewType) {
         treeView.beginTreeWiseOperation();
         List<TreeTableColumn<T, ?>> sortOrder = new ArrayList<>(treeView.getSortOrder());
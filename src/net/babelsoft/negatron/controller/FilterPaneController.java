@@ -20,7 +20,6 @@ package net.babelsoft.negatron.controller;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ResourceBundle;
-import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -218,6 +217,7 @@ public abstract class FilterPaneController<T extends EmulatedItem<T>> implements
             
             treeView.beginTreeWiseOperation();
             
+            filter.prepare();
             SortableTreeItem<T> tree = (SortableTreeItem<T>) treeView.getRoot();
             tree.setPredicate(TreeItemPredicate.create(filter));
             
@@ -340,19 +340,49 @@ public abstract class FilterPaneController<T extends EmulatedItem<T>> implements
         updateCheck.accept(statusMissing);
     }
     
+    protected String getDescriptionCriterion() {
+        return description.getText();
+    }
+    
+    protected String getNameCriterion() {
+        return name.getText();
+    }
+    
+    protected String getCompanyCriterion() {
+        return company.getText();
+    }
+    
     protected class Filter<T extends EmulatedItem<T>> implements Predicate<T> {
+        
+        /**
+         * Called once before testing items each time the filter criteria change.
+         */
+        protected void prepare() { }
+        
+        private boolean validateText(TextField field, String val) {
+            String filter = field.getText();
+            if (Strings.isValid(filter)) {
+                filter = filter.replace(" ", "").toLowerCase();
+                return val.contains(filter);
+            } else
+                return true;
+        }
+        
+        protected boolean testText(T item) {
+            return
+                validateText(description, item.getShortcut()) &&
+                validateText(name, item.getName()) &&
+                validateText(company, item.getCompany().replace(" ", "").toLowerCase()) &&
+                testGroup(item)
+            ;
+        }
+        
+        protected final boolean testGroup(T item) {
+            return validateText(group, item.getGroup());
+        }
 
         @Override
         public boolean test(T item) {
-            BiFunction<TextField, String, Boolean> validateText = (field, val) -> {
-                String filter = field.getText();
-                if (Strings.isValid(filter)) {
-                    filter = filter.replace(" ", "").toLowerCase();
-                    return val.contains(filter);
-                } else
-                    return true;
-            };
-
             boolean yearValidated = false;
             if (yearFixed.isSelected()) {
                 String mask = year.getText();
@@ -377,10 +407,7 @@ public abstract class FilterPaneController<T extends EmulatedItem<T>> implements
 
             return
                 // outline
-                validateText.apply(description, item.getShortcut()) &&
-                validateText.apply(name, item.getName()) &&
-                validateText.apply(company, item.getCompany().replace(" ", "").toLowerCase()) &&
-                validateText.apply(group, item.getGroup()) &&
+                testText(item) &&
                 yearValidated &&
                 (versionAll.isSelected() || !item.hasParent() && versionParents.isSelected() || item.hasParent() && versionClones.isSelected()) &&
                 // emulation
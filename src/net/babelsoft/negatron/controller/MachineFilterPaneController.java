@@ -19,6 +19,8 @@ package net.babelsoft.negatron.controller;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -32,6 +34,7 @@ import net.babelsoft.negatron.io.configuration.Configuration;
 import net.babelsoft.negatron.model.ControllerType;
 import net.babelsoft.negatron.model.DisplayType;
 import net.babelsoft.negatron.model.ScreenOrientation;
+import net.babelsoft.negatron.model.SoftwareSearchIndex;
 import net.babelsoft.negatron.model.SoundType;
 import net.babelsoft.negatron.model.Support;
 import net.babelsoft.negatron.model.item.Machine;
@@ -65,6 +68,8 @@ public class MachineFilterPaneController extends FilterPaneController<Machine> {
     @FXML
     private CheckBox softwareHousingMedium;
     @FXML
+    private TextField software;
+    @FXML
     private CheckBox numberPlayersNone;
     @FXML
     private CheckBox numberPlayersSingle;
@@ -109,6 +114,8 @@ public class MachineFilterPaneController extends FilterPaneController<Machine> {
     @FXML
     private CheckBox soundSurround;
     
+    private SoftwareSearchIndex searchIndex;
+    
     @Override
     protected void initialise() {
         super.initialise();
@@ -130,6 +137,7 @@ public class MachineFilterPaneController extends FilterPaneController<Machine> {
     @Override
     protected void wireEvents() {
         super.wireEvents();
+        software.textProperty().addListener(o -> handleOnAction(null));
         controllerPane.getChildren().stream().map(
             node -> (CheckBox) node
         ).forEach(
@@ -152,6 +160,10 @@ public class MachineFilterPaneController extends FilterPaneController<Machine> {
         Configuration.Manager.updateFilterConfiguration(data);
     }
     
+    public void setSearchIndex(SoftwareSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+    
     @Override
     protected void update(
         Consumer<TextField> updateText, Consumer<RadioButton> updateRadio,
@@ -168,6 +180,7 @@ public class MachineFilterPaneController extends FilterPaneController<Machine> {
         updateCheck.accept(businessModelFreeAccess);
         updateCheck.accept(softwareHousingEmbedded);
         updateCheck.accept(softwareHousingMedium);
+        updateText.accept(software);
         // input
         updateCheck.accept(numberPlayersNone);
         updateCheck.accept(numberPlayersSingle);
@@ -197,6 +210,13 @@ public class MachineFilterPaneController extends FilterPaneController<Machine> {
     }
     
     protected class MachineFilter extends Filter<Machine> {
+        
+        private Map<String, Set<String>> softwareMatches;
+        
+        @Override
+        protected void prepare() {
+            softwareMatches = searchIndex != null ? searchIndex.search(software.getText()) : null;
+        }
 
         @Override
         public boolean test(Machine machine) {
@@ -220,6 +240,9 @@ public class MachineFilterPaneController extends FilterPaneController<Machine> {
                 (!machine.isMechanical() && machineTypeElectronic.isSelected() || machine.isMechanical() && machineTypeMechanical.isSelected()) &&
                 (machine.hasCoinSlot() && businessModelCoinOperated.isSelected() || !machine.hasCoinSlot() && businessModelFreeAccess.isSelected()) &&
                 (machine.isSoftwareEmbedded() && softwareHousingEmbedded.isSelected() || !machine.isSoftwareEmbedded() && softwareHousingMedium.isSelected()) &&
+                (softwareMatches == null || machine.getSoftwareLists() != null && machine.getSoftwareLists().stream().anyMatch(
+                    softwareListFilter -> softwareMatches.containsKey(softwareListFilter.getSoftwareList())
+                )) &&
                 // input
                 (nbPlayers == 0 && numberPlayersNone.isSelected() || nbPlayers == 1 && numberPlayersSingle.isSelected() || nbPlayers == 2 && numberPlayersDuo.isSelected() || nbPlayers > 2 && numberPlayersMore.isSelected()) &&
                 (!machine.hasControllerTypes() && controllerNone.isSelected() || controllerValidated) &&
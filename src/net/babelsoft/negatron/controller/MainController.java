@@ -86,6 +86,7 @@ import net.babelsoft.negatron.io.loader.LoadingObserver;
 import net.babelsoft.negatron.io.loader.MachineLoader;
 import net.babelsoft.negatron.io.loader.MachineLoader.Mode;
 import net.babelsoft.negatron.model.SoftwareListFilter;
+import net.babelsoft.negatron.model.SoftwareSearchIndex;
 import net.babelsoft.negatron.model.comparing.Difference;
 import net.babelsoft.negatron.model.component.Device;
 import net.babelsoft.negatron.model.favourites.MachineConfiguration;
@@ -227,6 +228,7 @@ public class MainController implements Initializable, AlertController, EditContr
     private final AtomicBoolean machineLoadingSucceeded;
     private boolean isLoading;
     private boolean isDoingMachineTreeWiseOperation;
+    private boolean isPreviewingMachineList;
     private boolean isDoingSoftwareTreeWiseOperation;
     private String softwareTreeWiseOperationDeviceValue;
     private boolean isMameFatalErrorMode;
@@ -372,7 +374,7 @@ public class MainController implements Initializable, AlertController, EditContr
         });
         machineTreePane.setOnTreeWiseOperation(beginOp -> isDoingMachineTreeWiseOperation = beginOp);
         machineTreePane.currentItemProperty().addListener((o, oV, newValue) -> {
-            if (isDoingMachineTreeWiseOperation)
+            if (isDoingMachineTreeWiseOperation || isPreviewingMachineList)
                 return;
             
             if (newValue != null) {
@@ -705,6 +707,7 @@ public class MainController implements Initializable, AlertController, EditContr
         notifierPopup = new NotifierPopup();
         
         cache = new CacheManager(this, (machineList, machineStats, softwareStats, selection) -> Platform.runLater(() -> {
+            isPreviewingMachineList = false;
             machineTreePane.setItems(machineList);
             machineFolderViewWindow.initialiseData();
             machineFilterWindow.bind(machineTreePane);
@@ -750,6 +753,11 @@ public class MainController implements Initializable, AlertController, EditContr
             });
         }));
         
+        // machines can be browsed but not selected yet while they're being parsed
+        cache.setOnMachineListParsed(machines -> {
+            isPreviewingMachineList = true;
+            machineTreePane.appendItems(machines);
+        });
         cache.execute();
         
         if (stage == null)
@@ -1007,6 +1015,9 @@ public class MainController implements Initializable, AlertController, EditContr
                     configurationId += softwareListFilter.getSoftwareList();
                 }
                 softwareFilterWindow.setConfigurationId(configurationId);
+                softwareFilterWindow.setSoftwareLists(machine.getSoftwareLists().stream().map(
+                    SoftwareListFilter::getSoftwareList
+                ).toList());
 
                 // Fill software tree
                 List<Software> softwares = machine.getSoftwareLists().stream().flatMap(
@@ -1133,6 +1144,11 @@ public class MainController implements Initializable, AlertController, EditContr
         machineLoader.setSoftwareLists(softwareLists);
     }
     
+    public void setSoftwareSearchIndex(SoftwareSearchIndex searchIndex) {
+        machineFilterWindow.setSearchIndex(searchIndex);
+        softwareFilterWindow.setSearchIndex(searchIndex);
+    }
+    
     public void setFavouriteTree(FavouriteTree favourites) {
         favouriteTreePane.setFavouriteTree(favourites);
     }
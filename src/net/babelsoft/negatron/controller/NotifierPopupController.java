@@ -18,9 +18,9 @@
 package net.babelsoft.negatron.controller;
 
 import java.net.URL;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.layout.GridPane;
@@ -42,7 +42,7 @@ public class NotifierPopupController implements Initializable, LoadingObserver {
     private int informationThreadCount;
     
     public NotifierPopupController() {
-        subjects = new HashMap<>();
+        subjects = new ConcurrentHashMap<>(); // loaders notify their progress from their own threads
     }
     
     /**
@@ -18,6 +18,10 @@
 package net.babelsoft.negatron.controller;
 
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -27,6 +31,8 @@ import javafx.scene.control.Spinner;
 import javafx.scene.control.TextField;
 import net.babelsoft.negatron.io.cache.UIConfigurationData;
 import net.babelsoft.negatron.io.configuration.Configuration;
+import net.babelsoft.negatron.model.SoftwareSearchIndex;
+import net.babelsoft.negatron.model.SoftwareSearchIndex.Field;
 import net.babelsoft.negatron.model.Support;
 import net.babelsoft.negatron.model.item.Software;
 import net.babelsoft.negatron.theme.Language;
@@ -40,6 +46,9 @@ import net.babelsoft.negatron.view.control.EmulatedItemTreeView;
 public class SoftwareFilterPaneController extends FilterPaneController<Software> {
     
     private String configurationId;
+    private SoftwareSearchIndex searchIndex;
+    private List<String> softwareLists;
+    private SoftwareFilter filter;
     
     @FXML
     private CheckBox supportSupported;
@@ -61,7 +70,8 @@ public class SoftwareFilterPaneController extends FilterPaneController<Software>
 
     @Override
     public void setTreeView(EmulatedItemTreeView<Software> treeView) {
-        setTreeView(treeView, new SoftwareFilter());
+        filter = new SoftwareFilter();
+        setTreeView(treeView, filter);
     }
     
     @Override
@@ -75,6 +85,17 @@ public class SoftwareFilterPaneController extends FilterPaneController<Software>
         loadData();
     }
     
+    public void setSearchIndex(SoftwareSearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+    
+    public void setSoftwareLists(List<String> softwareLists) {
+        this.softwareLists = softwareLists;
+        // the current criteria may be left unchanged, so match them against the new lists right away
+        if (filter != null)
+            filter.prepare();
+    }
+    
     @Override
     protected void update(
         Consumer<TextField> updateText, Consumer<RadioButton> updateRadio,
@@ -88,6 +109,29 @@ public class SoftwareFilterPaneController extends FilterPaneController<Software>
     
     protected class SoftwareFilter extends Filter<Software> {
         
+        private Map<String, Set<String>> matches;
+        
+        @Override
+        protected void prepare() {
+            matches = null;
+            if (searchIndex != null && softwareLists != null) {
+                Map<Field, String> criteria = new EnumMap<>(Field.class);
+                criteria.put(Field.DESCRIPTION, getDescriptionCriterion());
+                criteria.put(Field.NAME, getNameCriterion());
+                criteria.put(Field.PUBLISHER, getCompanyCriterion());
+                matches = searchIndex.search(criteria, softwareLists);
+            }
+        }
+        
+        @Override
+        protected boolean testText(Software software) {
+            if (matches == null)
+                return super.testText(software);
+            
+            Set<String> names = matches.get(software.getGroup());
+            return names != null && names.contains(software.getName()) && testGroup(software);
+        }
+        
         @Override
         public boolean test(Software software) {
             Support support = software.getSupport();
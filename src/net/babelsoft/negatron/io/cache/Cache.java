@@ -19,6 +19,8 @@ package net.babelsoft.negatron.io.cache;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
@@ -26,11 +28,14 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -42,6 +47,7 @@ import net.babelsoft.negatron.io.configuration.Configuration;
  */
 public class Cache<T, S> {
     
+    private static final int CODEC_MAGIC = 0x4E474243; // "NGBC", Java serialisation streams start with 0xACED instead
     private static final String VERSION_EXTENSION = ".version";
     protected static final String CACHE_EXTENSION = ".cache";
     public static final Path ROOT_FOLDER = Paths.get(Configuration.getRootFolder().toString(), "Cache");
@@ -113,23 +119,68 @@ public class Cache<T, S> {
             });
     }
     
+    /**
+     * @return the binary format of the cache content, or null to use Java object serialisation
+     */
+    protected CacheCodec<T> getCodec() {
+        return null;
+    }
+    
+    /**
+     * @return the binary format of the cache version, or null to use Java object serialisation
+     */
+    protected CacheCodec<S> getVersionCodec() {
+        return null;
+    }
+    
     protected S loadVersion() throws ClassNotFoundException, IOException {
-        return load(versionPath);
+        return load(versionPath, getVersionCodec());
     }
     
     public T load() throws ClassNotFoundException, IOException {
-        return load(cachePath);
+        return load(cachePath, getCodec());
     }
     
-    @SuppressWarnings("unchecked")
     protected <O> O load(Path path) throws ClassNotFoundException, IOException {
+        return load(path, null);
+    }
+    
+    @SuppressWarnings("unchecked")
+    protected <O> O load(Path path, CacheCodec<O> codec) throws ClassNotFoundException, IOException {
         try {
-            if (Files.exists(path)) try (
-                InputStream file = Files.newInputStream(path);
-                InputStream buffer = new BufferedInputStream(file);
-                ObjectInput input = new ObjectInputStream(buffer);
-            ) {
-                return (O) input.readObject();
+            if (Files.exists(path)) {
+                long start = System.nanoTime();
+                O content;
+                boolean migrate = false;
+                
+                try (
+                    InputStream file = Files.newInputStream(path);
+                    InputStream buffer = new BufferedInputStream(file);
+                ) {
+                    DataInputStream header = new DataInputStream(buffer);
+                    buffer.mark(Integer.BYTES);
+                    if (codec != null && header.readInt() == CODEC_MAGIC) {
+                        int codecVersion = header.readInt();
+                        if (codecVersion != codec.getVersion())
+                            throw new IOException("Cache format v" + codecVersion + " is outdated: " + path);
+                        content = codec.read(new CacheDataInput(ByteBuffer.wrap(buffer.readAllBytes())));
+                    } else {
+                        // no codec or cache written by an older version of Negatron
+                        if (codec != null && !codec.isMigratable())
+                            throw new IOException("Serialised cache is outdated: " + path);
+                        buffer.reset();
+                        ObjectInput input = new ObjectInputStream(buffer);
+                        content = (O) input.readObject();
+                        migrate = codec != null;
+                    }
+                }
+                
+                Logger.getLogger(Cache.class.getName()).log(Level.FINE, "Loaded {0} ({1}) in {2} ms", new Object[] {
+                    path.getFileName(), codec != null && !migrate ? "binary" : "serialised", (System.nanoTime() - start) / 1_000_000
+                });
+                if (migrate) // rewrite once so that next sessions get the binary format
+                    save(content, path, codec);
+                return content;
             } else
                 return null;
         } catch (Exception ex) {
@@ -139,11 +190,11 @@ public class Cache<T, S> {
     }
     
     protected void saveVersion() throws IOException {
-        save(version, versionPath);
+        save(version, versionPath, getVersionCodec());
     }
     
     public void save(T content) throws IOException {
-        save(content, cachePath);
+        save(content, cachePath, getCodec());
     }
     
     protected void save(Object content, Path path) throws IOException {
@@ -155,4 +206,43 @@ public class Cache<T, S> {
             output.writeObject(content);
         }
     }
+    
+    protected <O> void save(O content, Path path, CacheCodec<O> codec) throws IOException {
+        if (codec == null) {
+            save(content, path);
+            return;
+        }
+        
+        long start = System.nanoTime();
+        CacheDataOutput data = new CacheDataOutput();
+        codec.write(content, data);
+        write(data, codec.getVersion(), path);
+        Logger.getLogger(Cache.class.getName()).log(Level.FINE, "Saved {0} (binary) in {1} ms", new Object[] {
+            path.getFileName(), (System.nanoTime() - start) / 1_000_000
+        });
+    }
+    
+    protected static void write(CacheDataOutput data, int codecVersion, Path path) throws IOException {
+        try (
+            OutputStream file = Files.newOutputStream(path);
+            OutputStream buffer = new BufferedOutputStream(file);
+            DataOutputStream output = new DataOutputStream(buffer);
+        ) {
+            output.writeInt(CODEC_MAGIC);
+            output.writeInt(codecVersion);
+            data.writeTo(output);
+        }
+    }
+    
+    /**
+     * Map a binary cache file in memory instead of reading it: only the pages actually decoded get loaded.
+     */
+    protected static CacheDataInput map(Path path, int codecVersion) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != CODEC_MAGIC || buffer.getInt() != codecVersion)
+                throw new IOException("Cache format is outdated: " + path);
+            return new CacheDataInput(buffer.slice());
+        }
+    }
 }
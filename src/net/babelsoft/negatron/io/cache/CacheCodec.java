@@ -0,0 +1,44 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.cache;
+
+/**
+ * Hand-rolled binary format of a cache file.<br />
+ * Caches without codec keep using Java object serialisation.
+ * @author capan
+ */
+public interface CacheCodec<O> {
+
+    /**
+     * Must be incremented each time the layout written by the codec changes,
+     * so that outdated cache files get rebuilt instead of misread.
+     */
+    int getVersion();
+
+    /**
+     * @return whether content serialised by older versions of Negatron can be rewritten with this codec,
+     * which only holds while the serialised classes keep the fields the codec relies on
+     */
+    default boolean isMigratable() {
+        return true;
+    }
+
+    void write(O content, CacheDataOutput output);
+
+    O read(CacheDataInput input);
+}
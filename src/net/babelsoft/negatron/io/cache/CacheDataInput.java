@@ -0,0 +1,169 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary reader counterpart of {@link CacheDataOutput}.
+ * @author capan
+ */
+public final class CacheDataInput {
+
+    private final ByteBuffer table;
+    private final int[] offsets;
+    private final String[] strings;
+    private final ByteBuffer body;
+
+    /**
+     * Index the string table then keep a view on the body that follows it.
+     * Strings are only decoded the first time they're read.
+     */
+    public CacheDataInput(ByteBuffer buffer) {
+        table = buffer.duplicate();
+        offsets = new int[buffer.getInt()];
+        strings = new String[offsets.length];
+        for (int i = 0; i < offsets.length; ++i) {
+            offsets[i] = buffer.position();
+            buffer.position(offsets[i] + Integer.BYTES + buffer.getInt());
+        }
+        int size = buffer.getInt();
+        body = buffer.slice(buffer.position(), size);
+    }
+
+    private CacheDataInput(CacheDataInput input, ByteBuffer body) {
+        table = input.table;
+        offsets = input.offsets;
+        strings = input.strings;
+        this.body = body;
+    }
+
+    /**
+     * @return an independent reader sharing the same string table and body, positioned at the given offset
+     */
+    public CacheDataInput duplicate(int position) {
+        CacheDataInput input = new CacheDataInput(this, body.duplicate());
+        input.body.position(position);
+        return input;
+    }
+
+    public int position() {
+        return body.position();
+    }
+
+    public int readByte() {
+        return body.get() & 0xFF;
+    }
+
+    public boolean readBoolean() {
+        return body.get() != 0;
+    }
+
+    public int readInt() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = body.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    public long readLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = body.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    public byte[] readBytes() {
+        int length = readInt();
+        if (length == 0)
+            return null;
+        byte[] value = new byte[length - 1];
+        body.get(value);
+        return value;
+    }
+
+    public String readString() {
+        int index = readInt() - 1;
+        if (index < 0)
+            return null;
+        
+        // concurrent readers may decode the same string twice, which is harmless
+        String value = strings[index];
+        if (value == null) {
+            byte[] bytes = new byte[table.getInt(offsets[index])];
+            table.get(offsets[index] + Integer.BYTES, bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = value;
+        }
+        return value;
+    }
+
+    public List<String> readStrings() {
+        int size = readInt();
+        if (size == 0)
+            return null;
+        List<String> values = new ArrayList<>(size - 1);
+        for (int i = 1; i < size; ++i)
+            values.add(readString());
+        return values;
+    }
+
+    public Map<String, String> readStringMap() {
+        int size = readInt();
+        if (size == 0)
+            return null;
+        Map<String, String> values = new HashMap<>();
+        for (int i = 1; i < size; ++i)
+            values.put(readString(), readString());
+        return values;
+    }
+
+    public <E extends Enum<E>> E readEnum(E[] values) {
+        int ordinal = readInt();
+        return ordinal > 0 ? values[ordinal - 1] : null;
+    }
+
+    public Instant readInstant() {
+        if (readBoolean())
+            return Instant.ofEpochSecond(readLong(), readInt());
+        else
+            return null;
+    }
+
+    public <M extends Map<String, Instant>> M readInstantMap(M values) {
+        for (int i = readInt(); i > 0; --i)
+            values.put(readString(), readInstant());
+        return values;
+    }
+}
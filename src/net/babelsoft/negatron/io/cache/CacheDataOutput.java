@@ -0,0 +1,166 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.cache;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary writer used by cache codecs.<br />
+ * Integers are written as variable-length quantities and every string goes through a string table,
+ * so that repeated values like source files, manufacturers or years are only stored once per file.
+ * The string table is written ahead of the body so that the body can be decoded from any offset.
+ * @author capan
+ */
+public final class CacheDataOutput {
+
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private byte[] body = new byte[64 * 1024];
+    private int size;
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > body.length)
+            body = Arrays.copyOf(body, Math.max(body.length << 1, size + extra));
+    }
+
+    public int position() {
+        return size;
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        body[size++] = (byte) value;
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Write an unsigned variable-length integer, 7 bits per byte.
+     */
+    public void writeInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            body[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        body[size++] = (byte) value;
+    }
+
+    public void writeLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            body[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        body[size++] = (byte) value;
+    }
+
+    public void writeBytes(byte[] value) {
+        if (value == null) {
+            writeInt(0);
+            return;
+        }
+        writeInt(value.length + 1);
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, body, size, value.length);
+        size += value.length;
+    }
+
+    /**
+     * 0 stands for null, any other value is the 1-based index within the string table.
+     */
+    public void writeString(String value) {
+        if (value == null) {
+            writeInt(0);
+            return;
+        }
+        Integer index = stringIndex.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            stringIndex.put(value, index);
+        }
+        writeInt(index + 1);
+    }
+
+    public void writeStrings(Collection<String> values) {
+        if (values == null) {
+            writeInt(0);
+            return;
+        }
+        writeInt(values.size() + 1);
+        values.forEach(this::writeString);
+    }
+
+    public void writeStringMap(Map<String, String> values) {
+        if (values == null) {
+            writeInt(0);
+            return;
+        }
+        writeInt(values.size() + 1);
+        values.forEach((key, value) -> {
+            writeString(key);
+            writeString(value);
+        });
+    }
+
+    public void writeEnum(Enum<?> value) {
+        writeInt(value != null ? value.ordinal() + 1 : 0);
+    }
+
+    public void writeInstant(Instant value) {
+        writeBoolean(value != null);
+        if (value != null) {
+            writeLong(value.getEpochSecond());
+            writeInt(value.getNano());
+        }
+    }
+
+    public void writeInstantMap(Map<String, Instant> values) {
+        writeInt(values.size());
+        values.forEach((key, value) -> {
+            writeString(key);
+            writeInstant(value);
+        });
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        DataOutputStream output = new DataOutputStream(stream);
+        output.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        output.writeInt(size);
+        output.write(body, 0, size);
+        output.flush();
+    }
+}
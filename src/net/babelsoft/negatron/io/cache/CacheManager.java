@@ -19,6 +19,10 @@ package net.babelsoft.negatron.io.cache;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -29,6 +33,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.scene.control.Alert.AlertType;
@@ -40,6 +45,7 @@ import net.babelsoft.negatron.io.loader.InitialisedCallable;
 import net.babelsoft.negatron.io.loader.MachineListLoader;
 import net.babelsoft.negatron.io.loader.MachineListLoader.MachineListData;
 import net.babelsoft.negatron.model.item.Machine;
+import net.babelsoft.negatron.model.item.SoftwareList;
 import net.babelsoft.negatron.model.statistics.MachineStatistics;
 import net.babelsoft.negatron.model.statistics.SoftwareStatistics;
 import net.babelsoft.negatron.util.function.TetraConsumer;
@@ -76,10 +82,14 @@ public class CacheManager extends Task<Void> {
         }
     }
     
+    private static final int PREVIEW_CAPACITY = 64;
+    
     private final MainController controller;
     private final ExecutorService service;
+    private final ExecutorService machineListService; // MAME processes and XML chunks of the machine list, not to queue behind software lists
     private final ExecutorCompletionService<Void> execService;
     private final TetraConsumer<List<Machine>, MachineStatistics, SoftwareStatistics, SelectionData> onMachineListLoaded;
+    private Consumer<List<Machine>> onMachineListParsed;
     
     public CacheManager(
         MainController controller,
@@ -97,6 +107,17 @@ public class CacheManager extends Task<Void> {
             return threadFactory.newThread(runnable);
         });
         execService = new ExecutorCompletionService<>(service);
+        machineListService = Executors.newFixedThreadPool(nbProcessors, runnable -> {
+            return threadFactory.newThread(runnable);
+        });
+    }
+    
+    /**
+     * @param onMachineListParsed called on the FX thread with detached copies of each batch of machines parsed while the machine list is being rebuilt,
+     * before the complete list is provided to onMachineListLoaded
+     */
+    public void setOnMachineListParsed(Consumer<List<Machine>> onMachineListParsed) {
+        this.onMachineListParsed = onMachineListParsed;
     }
     
     public void execute() {
@@ -112,34 +133,65 @@ public class CacheManager extends Task<Void> {
     @Override
     protected Void call() throws Exception {
         List<Future<Void>> tasks = new ArrayList<>();
+        // software lists and the machine list are built alongside, only the final linking of machines waiting for both
+        CompletableFuture<Map<String, SoftwareList>> softwareLists = new CompletableFuture<>();
         
         try {
             notify(true);
             
-            ///// Software lists
-            
-            // launch tasks
-            SoftwareListCache softwareListCache = new SoftwareListCache();
-            softwareListCache.threadedLoad().forEach(
-                loader -> tasks.add(execService.submit(loader))
-            );
-            
-            // wait for them to finish
-            for (int i = 0, max = tasks.size(); i < max; ++i)
-                tasks.remove(execService.take());
-            
-            controller.setSoftwareLists(softwareListCache.get());
-            
             ///// Machine lists
             
             // launch tasks
             MachineListLoader machineListLoader = new MachineListLoader(
-                softwareListCache.get(), controller.ProgressProperty()
+                softwareLists, controller.ProgressProperty(), machineListService
             );
+            
+            // on cache miss, let the machine tree grow while MAME output is parsed, one batch per pulse
+            AnimationTimer previewTimer = null;
+            if (onMachineListParsed != null) {
+                BlockingQueue<List<Machine>> preview = new ArrayBlockingQueue<>(PREVIEW_CAPACITY);
+                machineListLoader.setPreview(preview);
+                previewTimer = new AnimationTimer() {
+                    @Override
+                    public void handle(long now) {
+                        List<Machine> batch = preview.poll();
+                        if (batch != null)
+                            onMachineListParsed.accept(batch);
+                    }
+                };
+                Platform.runLater(previewTimer::start);
+            }
+            // submitted first as the longest task, its MAME processes and XML chunks getting their own pool
             Future<MachineListData> machineListFuture = service.submit(machineListLoader);
             
-            // wait for it to finish
-            MachineListData machines = machineListFuture.get();
+            SoftwareListCache softwareListCache = new SoftwareListCache();
+            MachineListData machines;
+            try {
+                ///// Software lists
+                
+                // launch tasks
+                softwareListCache.threadedLoad().forEach(
+                    loader -> tasks.add(execService.submit(loader))
+                );
+                
+                // wait for them to finish
+                for (int i = 0, max = tasks.size(); i < max; ++i)
+                    tasks.remove(execService.take());
+                
+                controller.setSoftwareLists(softwareListCache.get());
+                controller.setSoftwareSearchIndex(softwareListCache.getSearchIndex());
+                softwareLists.complete(softwareListCache.get());
+                
+                ///// Machine lists
+                
+                // wait for it to finish
+                machines = machineListFuture.get();
+            } finally {
+                machineListFuture.cancel(true); // no-op once done
+                // queued before the complete list gets displayed, so that no batch can come after it
+                if (previewTimer != null)
+                    Platform.runLater(previewTimer::stop);
+            }
             onMachineListLoaded.accept(
                 machines.getList(), machines.getStatistics(), softwareListCache.getStatistics(),
                 new SelectionData(
@@ -206,8 +258,10 @@ public class CacheManager extends Task<Void> {
             ));
             throw ex;
         } finally {
+            softwareLists.cancel(false); // no-op unless software lists failed, not to leave the machine list loader waiting
             notify(false);
             service.shutdown();
+            machineListService.shutdown();
         }
     }
 }
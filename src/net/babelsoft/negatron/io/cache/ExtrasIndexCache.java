@@ -0,0 +1,115 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.cache;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Listings of the extras folders and zip files, remembered along with the modification time of what has been listed
+ * so that only folders and zip files modified since the previous session get listed again.
+ * @author capan
+ */
+public class ExtrasIndexCache extends Cache<ExtrasIndexCache.Data, Void> {
+    
+    public static class Listing {
+        private final Instant modifiedTime;
+        private final long size;
+        private final Set<String> entries;
+        
+        public Listing(Instant modifiedTime, long size, Set<String> entries) {
+            this.modifiedTime = modifiedTime;
+            this.size = size;
+            this.entries = entries;
+        }
+
+        public Instant getModifiedTime() {
+            return modifiedTime;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public Set<String> getEntries() {
+            return entries;
+        }
+    }
+    
+    public static class Data extends HashMap<String, Listing> { // folder or zip file path > listing
+        static final long serialVersionUID = 1L;
+    }
+    
+    private static final CacheCodec<Data> CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(Data content, CacheDataOutput output) {
+            output.writeInt(content.size());
+            content.forEach((path, listing) -> {
+                output.writeString(path);
+                output.writeInstant(listing.modifiedTime);
+                output.writeLong(listing.size);
+                output.writeStrings(listing.entries);
+            });
+        }
+        
+        @Override
+        public Data read(CacheDataInput input) {
+            Data data = new Data();
+            for (int i = input.readInt(); i > 0; --i) {
+                String path = input.readString();
+                Instant modifiedTime = input.readInstant();
+                long size = input.readLong();
+                List<String> entries = input.readStrings();
+                data.put(path, new Listing(modifiedTime, size, entries != null ? new HashSet<>(entries) : new HashSet<>()));
+            }
+            return data;
+        }
+    };
+    
+    public ExtrasIndexCache() throws ClassNotFoundException, IOException {
+        super("extras");
+    }
+    
+    @Override
+    protected CacheCodec<Data> getCodec() {
+        return CODEC;
+    }
+    
+    @Override
+    public Data load() throws ClassNotFoundException, IOException {
+        Data data = null;
+        try {
+            data = super.load();
+        } catch (Exception ex) {
+            Logger.getLogger(ExtrasIndexCache.class.getName()).log(Level.WARNING, "Couldn't load extras index, re-building it", ex);
+        }
+        return data != null ? data : new Data();
+    }
+}
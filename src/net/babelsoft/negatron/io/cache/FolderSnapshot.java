@@ -0,0 +1,178 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.cache;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Latest creation and modification times found in folder trees, remembered folder per folder
+ * so that a folder only gets listed again when its own modification time has changed,
+ * i.e. when files have been added, removed or renamed in it.
+ * Files overwritten in place don't change the modification time of their folder and so go unnoticed
+ * until something else changes in that folder.
+ * @author capan
+ */
+class FolderSnapshot {
+    
+    private static class Folder {
+        private final Instant modifiedTime;
+        private Instant lastCreationTime = Instant.MIN; // of the files directly in the folder
+        private Instant lastModifiedTime = Instant.MIN;
+        private final List<String> subfolders = new ArrayList<>();
+        
+        Folder(Instant modifiedTime) {
+            this.modifiedTime = modifiedTime;
+        }
+    }
+    
+    /**
+     * Latest times found while scanning, merged from several threads.
+     */
+    static class Times {
+        private Instant lastCreationTime = Instant.MIN;
+        private Instant lastModifiedTime = Instant.MIN;
+        
+        private synchronized void update(Instant creationTime, Instant modifiedTime) {
+            if (lastCreationTime.isBefore(creationTime))
+                lastCreationTime = creationTime;
+            if (lastModifiedTime.isBefore(modifiedTime))
+                lastModifiedTime = modifiedTime;
+        }
+        
+        Instant getLastCreationTime() {
+            return lastCreationTime;
+        }
+        
+        Instant getLastModifiedTime() {
+            return lastModifiedTime;
+        }
+    }
+    
+    private final Map<String, Folder> folders = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+    
+    FolderSnapshot() { }
+    
+    FolderSnapshot(CacheDataInput input) {
+        for (int i = input.readInt(); i > 0; --i) {
+            String path = input.readString();
+            Folder folder = new Folder(input.readInstant());
+            folder.lastCreationTime = input.readInstant();
+            folder.lastModifiedTime = input.readInstant();
+            folder.subfolders.addAll(input.readStrings());
+            folders.put(path, folder);
+        }
+    }
+    
+    void write(CacheDataOutput output) {
+        output.writeInt(folders.size());
+        folders.forEach((path, folder) -> {
+            output.writeString(path);
+            output.writeInstant(folder.modifiedTime);
+            output.writeInstant(folder.lastCreationTime);
+            output.writeInstant(folder.lastModifiedTime);
+            output.writeStrings(folder.subfolders);
+        });
+    }
+    
+    /**
+     * @return whether folders have been listed again or forgotten by the latest scan
+     */
+    boolean isModified() {
+        return modified;
+    }
+    
+    /**
+     * Scan the given folder trees, the configured folders and their direct subfolders in parallel,
+     * and forget about the folders which aren't part of them anymore.
+     */
+    Times scan(List<String> paths) {
+        Times times = new Times();
+        modified = false;
+        Set<String> visited = ConcurrentHashMap.newKeySet();
+        
+        paths.parallelStream().map(Paths::get).filter(Files::exists).forEach(path -> {
+            try {
+                visit(path, times, visited, true);
+            } catch (IOException ex) {
+                Logger.getLogger(FolderSnapshot.class.getName()).log(Level.WARNING, "Couldn't retrieve status versioning", ex);
+            }
+        });
+        
+        if (folders.keySet().retainAll(visited))
+            modified = true;
+        return times;
+    }
+    
+    private void visit(Path path, Times times, Set<String> visited, boolean isTopLevel) throws IOException {
+        String key = path.toString();
+        if (!visited.add(key))
+            return;
+        
+        Instant modifiedTime = Files.getLastModifiedTime(path).toInstant();
+        Folder folder = folders.get(key);
+        if (folder == null || !folder.modifiedTime.equals(modifiedTime)) {
+            folder = new Folder(modifiedTime);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory())
+                        folder.subfolders.add(child.getFileName().toString());
+                    else {
+                        Instant time = attrs.creationTime().toInstant();
+                        if (folder.lastCreationTime.isBefore(time))
+                            folder.lastCreationTime = time;
+                        time = attrs.lastModifiedTime().toInstant();
+                        if (folder.lastModifiedTime.isBefore(time))
+                            folder.lastModifiedTime = time;
+                    }
+                }
+            }
+            folders.put(key, folder);
+            modified = true;
+        }
+        
+        // removing a file only shows up on the folder that contained it
+        times.update(folder.lastCreationTime, modifiedTime.isAfter(folder.lastModifiedTime) ? modifiedTime : folder.lastModifiedTime);
+        
+        (isTopLevel ? folder.subfolders.parallelStream() : folder.subfolders.stream()).forEach(subfolder -> {
+            try {
+                visit(path.resolve(subfolder), times, visited, false);
+            } catch (NoSuchFileException ex) {
+                // removed since the folder got listed, which will be noticed by the next scan
+            } catch (IOException ex) {
+                Logger.getLogger(FolderSnapshot.class.getName()).log(Level.WARNING, "Couldn't retrieve status versioning", ex);
+            }
+        });
+    }
+}
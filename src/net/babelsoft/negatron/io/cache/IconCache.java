@@ -18,41 +18,178 @@
 package net.babelsoft.negatron.io.cache;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javafx.application.Platform;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
 import javafx.scene.image.PixelFormat;
-import javafx.scene.image.PixelReader;
 import javafx.scene.image.WritableImage;
+import net.babelsoft.negatron.model.AtlasIcon;
+import net.babelsoft.negatron.util.UpdateDispatcher;
 
 /**
- *
+ * Icons are stored as fixed-size slots of a memory-mapped atlas file, the cache itself only indexing slots by name.
+ * Each atlas page is exposed to JavaFX as a single image backed by the mapped memory,
+ * so that neither the heap nor the texture memory grows with the number of icons.
+ * Icons get decoded by several threads at once, so both the index and the versions are held in concurrent maps.
  * @author capan
  */
 public class IconCache extends Cache<IconCache.Data, IconCache.Version> {
     
-    protected static class Version extends HashMap<String, Instant> {
+    protected static class Version extends ConcurrentHashMap<String, Instant> {
         static final long serialVersionUID = 1L;
     }
     
-    protected static class Data extends HashMap<String, byte[]> {
+    protected static class Data extends HashMap<String, Integer> {
         static final long serialVersionUID = 1L;
     }
     
+    private static final CacheCodec<Data> CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 2;
+        }
+        
+        @Override
+        public boolean isMigratable() {
+            return false; // icons are stored in the atlas since they were serialised
+        }
+        
+        @Override
+        public void write(Data content, CacheDataOutput output) {
+            output.writeInt(content.size());
+            content.forEach((key, value) -> {
+                output.writeString(key);
+                output.writeInt(value);
+            });
+        }
+        
+        @Override
+        public Data read(CacheDataInput input) {
+            Data data = new Data();
+            for (int i = input.readInt(); i > 0; --i)
+                data.put(input.readString(), input.readInt());
+            return data;
+        }
+    };
+    
+    private static final CacheCodec<Version> VERSION_CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(Version content, CacheDataOutput output) {
+            output.writeInstantMap(content);
+        }
+        
+        @Override
+        public Version read(CacheDataInput input) {
+            return input.readInstantMap(new Version());
+        }
+    };
+    
+    /**
+     * One atlas page, whose pixels are shared between the mapped file and its JavaFX image.
+     * As JavaFX may render the image at any time, new icons are staged until the JavaFX thread copies them into the page.
+     */
+    private static class Page {
+        final MappedByteBuffer buffer;
+        final PixelBuffer<ByteBuffer> pixels;
+        final Image image;
+        final Map<Integer, byte[]> staged = new ConcurrentHashMap<>(); // icon pixels by offset in the page
+        
+        Page(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            pixels = new PixelBuffer<>(PAGE_WIDTH, PAGE_HEIGHT, buffer, PixelFormat.getByteBgraPreInstance());
+            image = new WritableImage(pixels);
+        }
+        
+        /**
+         * Copy the staged icons into the page and re-upload its texture, on the JavaFX thread only.
+         */
+        void refresh() {
+            if (staged.isEmpty())
+                return;
+            
+            pixels.updateBuffer(pixelBuffer -> {
+                for (Integer offset : staged.keySet()) {
+                    byte[] icon = staged.remove(offset);
+                    if (icon != null) for (int y = 0; y < HEIGHT; ++y)
+                        buffer.put(offset + y * PAGE_WIDTH * COLOURDEPTH, icon, y * WIDTH * COLOURDEPTH, WIDTH * COLOURDEPTH);
+                }
+                return null;
+            });
+        }
+    }
+    
+    // textures have to be re-uploaded once their pixels are modified, at most once per pulse
+    private static final UpdateDispatcher.Field<Page, Boolean> REFRESH = new UpdateDispatcher.Field<>(
+        (page, value) -> page.refresh()
+    );
+    
+    private static final long FLUSH_TIMEOUT = 10; // in seconds
+    
     public static final int WIDTH = 16;
     public static final int HEIGHT = 16;
     public static final int COLOURDEPTH = 4;
     
-    private final Map<String, Image> data;
+    private static final int PAGE_COLUMNS = 32;
+    private static final int PAGE_ROWS = 32;
+    private static final int PAGE_WIDTH = PAGE_COLUMNS * WIDTH;
+    private static final int PAGE_HEIGHT = PAGE_ROWS * HEIGHT;
+    private static final int PAGE_SLOTS = PAGE_COLUMNS * PAGE_ROWS;
+    private static final int PAGE_SIZE = PAGE_WIDTH * PAGE_HEIGHT * COLOURDEPTH;
+    
+    private final Path atlasPath;
+    private final Map<String, Integer> slots;
+    private final List<Page> pages;
+    private final Deque<Integer> freeSlots;
+    private int nextSlot;
+    private FileChannel atlas;
 
     protected IconCache() throws ClassNotFoundException, IOException {
         super("icon");
-        data = new HashMap<>();
+        atlasPath = Paths.get(ROOT_FOLDER.toString(), "icon.atlas");
+        slots = new ConcurrentHashMap<>();
+        pages = new CopyOnWriteArrayList<>();
+        freeSlots = new ArrayDeque<>();
+    }
+    
+    @Override
+    protected CacheCodec<Data> getCodec() {
+        return CODEC;
+    }
+    
+    @Override
+    protected CacheCodec<Version> getVersionCodec() {
+        return VERSION_CODEC;
     }
     
     public String pathToKey(Path path) {
@@ -82,31 +219,76 @@ public class IconCache extends Cache<IconCache.Data, IconCache.Version> {
             Logger.getLogger(IconCache.class.getName()).log(Level.WARNING, null, ex);
         }
         
-        if (cache != null)
-            cache.entrySet().stream().forEach(entry -> {
-                WritableImage img = new WritableImage(WIDTH, HEIGHT);
-                img.getPixelWriter().setPixels(
-                    0, 0, WIDTH, HEIGHT, PixelFormat.getByteBgraInstance(), entry.getValue(), 0, WIDTH * COLOURDEPTH
+        synchronized (this) {
+            if (atlas == null)
+                atlas = FileChannel.open(atlasPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            
+            // the atlas file is mapped once, pages which are already mapped keep being used as images may still display them
+            int pageCount = (int) (atlas.size() / PAGE_SIZE);
+            int mappedPageCount = pages.size();
+            if (pageCount > mappedPageCount) {
+                MappedByteBuffer buffer = atlas.map(
+                    FileChannel.MapMode.READ_WRITE, (long) mappedPageCount * PAGE_SIZE, (long) (pageCount - mappedPageCount) * PAGE_SIZE
                 );
-
-                data.put(entry.getKey(), img);
-            });
-        else
-            version.clear();
+                for (int i = 0; i < pageCount - mappedPageCount; ++i)
+                    pages.add(new Page(buffer.slice(i * PAGE_SIZE, PAGE_SIZE)));
+            }
+            
+            if (cache != null && cache.values().stream().anyMatch(slot -> slot < 0 || slot >= pageCount * PAGE_SLOTS)) {
+                Logger.getLogger(IconCache.class.getName()).log(Level.WARNING, "Icon atlas doesn't match its index, re-building it");
+                cache = null;
+            }
+            
+            slots.clear();
+            freeSlots.clear();
+            nextSlot = 0;
+            if (cache != null) {
+                slots.putAll(cache);
+                
+                BitSet usedSlots = new BitSet();
+                cache.values().forEach(usedSlots::set);
+                nextSlot = usedSlots.length();
+                for (int slot = usedSlots.nextClearBit(0); slot < nextSlot; slot = usedSlots.nextClearBit(slot + 1))
+                    freeSlots.add(slot);
+            } else
+                version.clear();
+        }
         
         return cache;
     }
+    
+    private synchronized int allocateSlot() {
+        Integer slot = freeSlots.poll();
+        if (slot == null)
+            slot = nextSlot++;
+        
+        int pageIndex = slot / PAGE_SLOTS;
+        if (pageIndex >= pages.size()) try {
+            pages.add(new Page(atlas.map(FileChannel.MapMode.READ_WRITE, (long) pageIndex * PAGE_SIZE, PAGE_SIZE)));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Couldn't extend icon atlas", ex);
+        }
+        return slot;
+    }
 
     public Set<String> getKeys() {
-        return data.keySet();
+        return slots.keySet();
     }
 
     public Instant getVersion(String name) {
         return version.get(name);
     }
 
-    public Image get(String name) {
-        return data.get(name);
+    public AtlasIcon get(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null)
+            return null;
+        
+        int column = slot % PAGE_SLOTS % PAGE_COLUMNS;
+        int row = slot % PAGE_SLOTS / PAGE_COLUMNS;
+        return new AtlasIcon(
+            pages.get(slot / PAGE_SLOTS).image, new Rectangle2D(column * WIDTH, row * HEIGHT, WIDTH, HEIGHT)
+        );
     }
 
     public void putVersion(String key, Instant timestamp) {
@@ -114,28 +296,63 @@ public class IconCache extends Cache<IconCache.Data, IconCache.Version> {
     }
 
     public void put(String key, Image image) {
-        data.put(key, image);
+        if (image == null) {
+            // the slot isn't reused before next session, as items may still display it until they get updated
+            slots.remove(key);
+            return;
+        }
+        
+        byte[] pixels = new byte[WIDTH * HEIGHT * COLOURDEPTH];
+        image.getPixelReader().getPixels(
+            0, 0, Math.min(WIDTH, (int) image.getWidth()), Math.min(HEIGHT, (int) image.getHeight()),
+            PixelFormat.getByteBgraPreInstance(), pixels, 0, WIDTH * COLOURDEPTH
+        );
+        
+        int slot = slots.computeIfAbsent(key, k -> allocateSlot());
+        Page page = pages.get(slot / PAGE_SLOTS);
+        int column = slot % PAGE_SLOTS % PAGE_COLUMNS;
+        int row = slot % PAGE_SLOTS / PAGE_COLUMNS;
+        int offset = (row * HEIGHT * PAGE_WIDTH + column * WIDTH) * COLOURDEPTH;
+        page.staged.put(offset, pixels);
+        
+        UpdateDispatcher.Instance.post(page, REFRESH, Boolean.TRUE);
     }
 
     public void remove(String key) {
         version.remove(key);
-        data.remove(key);
+        slots.remove(key);
+    }
+    
+    /**
+     * Copy the icons still staged into their page, waiting for the JavaFX thread to do so.
+     */
+    private void flush() throws IOException {
+        if (Platform.isFxApplicationThread()) {
+            pages.forEach(Page::refresh);
+            return;
+        }
+        if (pages.stream().allMatch(page -> page.staged.isEmpty()))
+            return;
+        
+        FutureTask<Void> task = new FutureTask<>(() -> pages.forEach(Page::refresh), null);
+        try {
+            Platform.runLater(task);
+            task.get(FLUSH_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing icon atlas");
+        } catch (ExecutionException | TimeoutException | IllegalStateException ex) {
+            throw new IOException("Couldn't flush icon atlas", ex);
+        }
     }
     
     public void save() throws IOException {
-        Data cache = new Data();
-        data.entrySet().stream().forEach(entry -> {
-            Image img = entry.getValue();
-            
-            PixelReader pixelReader = img.getPixelReader();
-            byte[] buffer = new byte[WIDTH * HEIGHT * COLOURDEPTH];
-            pixelReader.getPixels(
-                0, 0, WIDTH, HEIGHT, PixelFormat.getByteBgraInstance(), buffer, 0, WIDTH * COLOURDEPTH
-            );
-            
-            cache.put(entry.getKey(), buffer);
-        });
+        // flush pixels before the index which refers to them
+        flush();
+        pages.forEach(page -> page.buffer.force());
         
+        Data cache = new Data();
+        cache.putAll(slots);
         super.save(cache);
         saveVersion();
     }
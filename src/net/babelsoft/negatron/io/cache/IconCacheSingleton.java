@@ -25,6 +25,7 @@ import java.util.logging.Logger;
 import net.babelsoft.negatron.io.loader.IconLoader;
 import net.babelsoft.negatron.io.loader.InitialisedCallable;
 import net.babelsoft.negatron.io.loader.ThreadedCacheLoader;
+import net.babelsoft.negatron.model.AtlasIcon;
 
 /**
  *
@@ -51,4 +52,11 @@ public enum IconCacheSingleton implements ThreadedCacheLoader<InitialisedCallabl
         
         return list;
     }
+    
+    /**
+     * @return the cached icon of the given machine, or null if there isn't any
+     */
+    public AtlasIcon get(String name) {
+        return cache != null ? cache.get(name) : null;
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.cache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.babelsoft.negatron.model.AtlasIcon;
+import net.babelsoft.negatron.model.item.Machine;
+import net.babelsoft.negatron.util.UpdateDispatcher;
+
+/**
+ * Resolve machine icons on demand, i.e. only once a cell displaying the machine becomes visible.
+ * Icons are looked up in the icon cache on a background thread so that scrolling never waits for them,
+ * and get pushed to their machine on next pulse, which repaints the rows bound to it.
+ * Only the most recently requested machines keep their icon, the others being reset to the default icon.
+ * @author capan
+ */
+public enum IconResolver {
+    Instance;
+    
+    private static final int BUDGET = 2048;
+    
+    private final Map<String, Machine> resolvedMachines;
+    private final Set<String> pendingNames;
+    private final ExecutorService executor;
+    
+    IconResolver() {
+        resolvedMachines = new LinkedHashMap<>(BUDGET, 0.75f, true) {
+            static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Machine> eldest) {
+                if (size() > BUDGET) {
+                    UpdateDispatcher.Instance.post(eldest.getValue(), Machine.ICON, null);
+                    return true;
+                } else
+                    return false;
+            }
+        };
+        pendingNames = new HashSet<>();
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "icon-resolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Ask for the icon of the given machine, unless it has already been resolved.
+     * Requesting a resolved machine marks it as the most recently used one.
+     */
+    public void request(Machine machine) {
+        String name = machine.getName();
+        synchronized (this) {
+            if (resolvedMachines.get(name) != null || !pendingNames.add(name))
+                return;
+        }
+        executor.execute(() -> resolve(machine));
+    }
+    
+    private void resolve(Machine machine) {
+        String name = machine.getName();
+        AtlasIcon icon = IconCacheSingleton.Instance.get(name);
+        synchronized (this) {
+            pendingNames.remove(name);
+            resolvedMachines.put(name, machine);
+        }
+        UpdateDispatcher.Instance.post(machine, Machine.ICON, icon);
+    }
+    
+    /**
+     * Resolve again the icon of the given machine if it's currently resolved, e.g. because its icon file has been modified.
+     */
+    public void refresh(String name) {
+        Machine machine;
+        synchronized (this) {
+            machine = resolvedMachines.remove(name);
+        }
+        if (machine != null)
+            request(machine);
+    }
+    
+    /**
+     * Resolve again all the currently resolved icons, e.g. because the icon cache has just been loaded.
+     */
+    public void refreshAll() {
+        List<Machine> machines;
+        synchronized (this) {
+            machines = new ArrayList<>(resolvedMachines.values());
+            resolvedMachines.clear();
+        }
+        machines.forEach(this::request);
+    }
+}
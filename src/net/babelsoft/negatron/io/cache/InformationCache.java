@@ -30,8 +30,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.babelsoft.negatron.io.configuration.Configuration;
@@ -72,6 +74,92 @@ public class InformationCache extends Cache<InformationCache.Data, InformationCa
         static final long serialVersionUID = 1L;
     }
 
+    private static <V> void writeMap(Map<String, V> map, CacheDataOutput output, BiConsumer<CacheDataOutput, V> writer) {
+        output.writeInt(map.size());
+        map.forEach((key, value) -> {
+            output.writeString(key);
+            writer.accept(output, value);
+        });
+    }
+    
+    private static <V, M extends Map<String, V>> M readMap(M map, CacheDataInput input, Function<CacheDataInput, V> reader) {
+        for (int i = input.readInt(); i > 0; --i)
+            map.put(input.readString(), reader.apply(input));
+        return map;
+    }
+    
+    private static final CacheCodec<Data> CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(Data content, CacheDataOutput output) {
+            writeMap(content, output, (o, systems) -> writeMap(systems, o, CacheDataOutput::writeStringMap));
+        }
+        
+        @Override
+        public Data read(CacheDataInput input) {
+            return readMap(new Data(), input, i -> readMap(new HashMap<>(), i, CacheDataInput::readStringMap));
+        }
+    };
+    
+    private static final CacheCodec<SystemIndex> SYSTEM_INDEX_CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(SystemIndex content, CacheDataOutput output) {
+            writeMap(content, output, (o, systems) -> writeMap(systems, o, CacheDataOutput::writeStrings));
+        }
+        
+        @Override
+        public SystemIndex read(CacheDataInput input) {
+            return readMap(new SystemIndex(), input, i -> readMap(new HashMap<>(), i, CacheDataInput::readStrings));
+        }
+    };
+    
+    private static final CacheCodec<ItemIndex> ITEM_INDEX_CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(ItemIndex content, CacheDataOutput output) {
+            writeMap(content, output, (o, systems) -> writeMap(systems, o, CacheDataOutput::writeStringMap));
+        }
+        
+        @Override
+        public ItemIndex read(CacheDataInput input) {
+            return readMap(new ItemIndex(), input, i -> readMap(new HashMap<>(), i, CacheDataInput::readStringMap));
+        }
+    };
+    
+    private static final CacheCodec<Version> VERSION_CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(Version content, CacheDataOutput output) {
+            output.writeInstantMap(content);
+        }
+        
+        @Override
+        public Version read(CacheDataInput input) {
+            return input.readInstantMap(new Version());
+        }
+    };
+
     private static final String SYSTEM_INDEX_FILE = "info.system.index"; // system = root or machine
     private static final String ITEM_INDEX_FILE = "info.item.index"; // item = machine or software
     
@@ -86,6 +174,16 @@ public class InformationCache extends Cache<InformationCache.Data, InformationCa
         super("info");
     }
     
+    @Override
+    protected CacheCodec<Data> getCodec() {
+        return CODEC;
+    }
+    
+    @Override
+    protected CacheCodec<Version> getVersionCodec() {
+        return VERSION_CODEC;
+    }
+    
     public boolean isReady() {
         return data != null;
     }
@@ -172,9 +270,9 @@ public class InformationCache extends Cache<InformationCache.Data, InformationCa
     protected void loadIndex() throws ClassNotFoundException, IOException {
         try {
             Path systemIndexPath = Paths.get(ROOT_FOLDER.toString(), SYSTEM_INDEX_FILE);
-            systemIndex = load(systemIndexPath);
+            systemIndex = load(systemIndexPath, SYSTEM_INDEX_CODEC);
             Path itemIndexPath = Paths.get(ROOT_FOLDER.toString(), ITEM_INDEX_FILE);
-            itemIndex = load(itemIndexPath);
+            itemIndex = load(itemIndexPath, ITEM_INDEX_CODEC);
         } catch (Exception ex) {
             Logger.getLogger(InformationCache.class.getName()).log(Level.WARNING, null, ex);
         }
@@ -262,10 +360,10 @@ public class InformationCache extends Cache<InformationCache.Data, InformationCa
     
     protected void saveIndex() throws IOException {
         Path systemIndexPath = Paths.get(ROOT_FOLDER.toString(), SYSTEM_INDEX_FILE);
-        save(systemIndex, systemIndexPath);
+        save(systemIndex, systemIndexPath, SYSTEM_INDEX_CODEC);
         
         Path itemIndexPath = Paths.get(ROOT_FOLDER.toString(), ITEM_INDEX_FILE);
-        save(itemIndex, itemIndexPath);
+        save(itemIndex, itemIndexPath, ITEM_INDEX_CODEC);
     }
     
     public void save(InformationData infoData) throws IOException {
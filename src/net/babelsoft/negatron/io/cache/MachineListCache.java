@@ -21,8 +21,16 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.babelsoft.negatron.io.Mame;
@@ -52,10 +60,145 @@ public class MachineListCache extends Cache<MachineListCache.Data, String> {
         }
     }
 
+    private static final String DETAIL_PREFIX = "machine-";
+    private static final String DETAIL_EXTENSION = ".detail";
+    private static final String SOURCE_SIZE_FILE = "machine.size";
+    
+    /**
+     * Hot/cold split: the main cache file only holds what the machine tree and the filters need at start-up,
+     * while BIOS, RAM, devices, slots and software lists go to a companion detail file which is memory-mapped
+     * and decoded machine per machine the first time one of those fields is accessed.
+     * ROM dumps follow each machine's detail in the same file but are decoded separately, only for ROM audits.
+     * The detail file gets a fresh name each time it is saved so that a file still mapped by the running session,
+     * which can't be overwritten on Windows, is never reused.
+     */
+    private final CacheCodec<Data> codec = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 4;
+        }
+        
+        @Override
+        public boolean isMigratable() {
+            return false; // machines have gained their ROM dumps since they were serialised
+        }
+        
+        @Override
+        public void write(Data content, CacheDataOutput output) {
+            // parents aren't always part of the list, e.g. non-runnable parents before MAME v0.186
+            List<Machine> machines = new ArrayList<>(content);
+            Set<String> names = new HashSet<>();
+            content.forEach(machine -> names.add(machine.getName()));
+            content.stream().map(
+                Machine::getParent
+            ).filter(
+                parent -> parent != null && names.add(parent.getName())
+            ).forEach(
+                machines::add
+            );
+            
+            CacheDataOutput detail = new CacheDataOutput();
+            output.writeInt(content.size());
+            output.writeInt(machines.size());
+            machines.forEach(machine -> {
+                machine.write(output);
+                output.writeInt(detail.position());
+                machine.writeDetail(detail);
+                output.writeInt(detail.position());
+                machine.writeRoms(detail);
+            });
+            
+            // cross-references are written by name once every machine has been written
+            machines.forEach(
+                machine -> output.writeString(machine.hasParent() ? machine.getParent().getName() : null)
+            );
+            
+            Path detailPath = ROOT_FOLDER.resolve(
+                DETAIL_PREFIX + Long.toHexString(System.currentTimeMillis()) + DETAIL_EXTENSION
+            );
+            try {
+                Cache.write(detail, getVersion(), detailPath);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            output.writeString(detailPath.getFileName().toString());
+            deleteDetails(detailPath);
+        }
+        
+        @Override
+        public Data read(CacheDataInput input) {
+            int listSize = input.readInt();
+            int count = input.readInt();
+            List<Machine> machines = new ArrayList<>(count);
+            int[] offsets = new int[count];
+            int[] romOffsets = new int[count];
+            Map<String, Machine> map = new HashMap<>(count * 4 / 3 + 1);
+            
+            for (int i = 0; i < count; ++i) {
+                Machine machine = new Machine(input);
+                offsets[i] = input.readInt();
+                romOffsets[i] = input.readInt();
+                machines.add(machine);
+                map.put(machine.getName(), machine);
+            }
+            
+            machines.forEach(machine -> {
+                String parent = input.readString();
+                if (parent != null)
+                    machine.setParent(map.get(parent));
+            });
+            
+            CacheDataInput detail;
+            try {
+                detail = map(ROOT_FOLDER.resolve(input.readString()), getVersion());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            for (int i = 0; i < count; ++i)
+                machines.get(i).setDetail(detail, offsets[i], romOffsets[i], map);
+            
+            // statistics depend on parents so only fill the list once they're resolved
+            Data data = new Data();
+            data.ensureCapacity(listSize);
+            for (int i = 0; i < listSize; ++i)
+                data.add(machines.get(i));
+            return data;
+        }
+    };
+    
+    private static final CacheCodec<String> VERSION_CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(String content, CacheDataOutput output) {
+            output.writeString(content);
+        }
+        
+        @Override
+        public String read(CacheDataInput input) {
+            return input.readString();
+        }
+    };
+
     public MachineListCache() throws ClassNotFoundException, IOException {
         super("machine");
     }
 
+    @Override
+    protected CacheCodec<Data> getCodec() {
+        return codec;
+    }
+    
+    @Override
+    protected CacheCodec<String> getVersionCodec() {
+        return VERSION_CODEC;
+    }
+
     public boolean checkVersion() throws IOException {
         if (version == null)
             return false;
@@ -105,8 +248,50 @@ public class MachineListCache extends Cache<MachineListCache.Data, String> {
         saveVersion();
     }
 
+    /**
+     * @return the number of bytes MAME output the last time the machine list got built, or 0 if unknown
+     */
+    public long loadSourceSize() {
+        Path path = ROOT_FOLDER.resolve(SOURCE_SIZE_FILE);
+        if (Files.exists(path)) try {
+            return Long.parseLong(Files.readString(path).trim());
+        } catch (Exception ex) {
+            Logger.getLogger(MachineListCache.class.getName()).log(Level.FINE, "Couldn't read previous machine list size", ex);
+        }
+        return 0;
+    }
+    
+    /**
+     * Unlike the cache itself, this hint survives {@link #clear()} so that it's still there
+     * to estimate progress while rebuilding the machine list after a MAME update.
+     */
+    public void saveSourceSize(long size) {
+        try {
+            Files.writeString(ROOT_FOLDER.resolve(SOURCE_SIZE_FILE), Long.toString(size));
+        } catch (IOException ex) {
+            Logger.getLogger(MachineListCache.class.getName()).log(Level.WARNING, "Couldn't save machine list size", ex);
+        }
+    }
+
     public void clear() throws IOException {
         Files.deleteIfExists(cachePath);
         Files.deleteIfExists(versionPath);
+        deleteDetails(null);
+    }
+    
+    /**
+     * Best-effort removal of detail files other than the given one:
+     * a file still mapped by the running session can't be deleted on Windows and is left for the next one.
+     */
+    private static void deleteDetails(Path kept) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(ROOT_FOLDER, DETAIL_PREFIX + "*" + DETAIL_EXTENSION)) {
+            for (Path path : stream) if (!path.equals(kept)) try {
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                Logger.getLogger(MachineListCache.class.getName()).log(Level.FINE, "Couldn't delete outdated machine details", ex);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(MachineListCache.class.getName()).log(Level.WARNING, "Couldn't list outdated machine details", ex);
+        }
     }
 }
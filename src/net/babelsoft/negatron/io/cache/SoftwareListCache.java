@@ -23,10 +23,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,11 +38,16 @@ import net.babelsoft.negatron.io.configuration.Configuration;
 import net.babelsoft.negatron.io.configuration.Property;
 import net.babelsoft.negatron.io.loader.SoftwareListLoader;
 import net.babelsoft.negatron.io.loader.ThreadedCacheLoader;
+import net.babelsoft.negatron.model.SoftwareSearchIndex;
 import net.babelsoft.negatron.model.item.SoftwareList;
 import net.babelsoft.negatron.model.statistics.SoftwareStatistics;
 
 /**
- *
+ * Each software list is cached in its own segment file, next to a small manifest holding statistics and a summary of each list,
+ * so that updating a single hash file only rewrites the segment built from it.
+ * The manifest also holds the search index built across all lists.
+ * Cached lists are lazy: their segment is only read the first time one of their softwares is requested,
+ * and only the most recently used ones are kept fully loaded.
  * @author capan
  */
 public class SoftwareListCache extends Cache<SoftwareListCache.Data, SoftwareListCache.Version> implements ThreadedCacheLoader<Callable<Void>> {
@@ -47,33 +56,166 @@ public class SoftwareListCache extends Cache<SoftwareListCache.Data, SoftwareLis
         static final long serialVersionUID = 1L;
     }
     
-    protected static class Data extends HashMap<String, SoftwareList> {
-        static final long serialVersionUID = 2L;
+    protected static class Data extends ConcurrentHashMap<String, SoftwareList> {
+        static final long serialVersionUID = 3L;
         
         private SoftwareStatistics statistics = new SoftwareStatistics();
+        private SoftwareSearchIndex index = new SoftwareSearchIndex();
         
         // TODO: override other remove methods?
         @Override
         public SoftwareList remove(Object key) {
             statistics.remove(key.toString());
+            index.remove(key.toString());
             return super.remove(key);
         }
     }
     
+    private static final Path SEGMENT_FOLDER = ROOT_FOLDER.resolve("softlist");
+    private static final String SEGMENT_EXTENSION = ".segment";
+    private static final int MAX_LOADED_LISTS = 32;
+    
+    /**
+     * Manifest: the segments themselves are read and written one by one through {@link #SEGMENT_CODEC}.
+     */
+    private final CacheCodec<Data> codec = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 4;
+        }
+        
+        @Override
+        public boolean isMigratable() {
+            return false; // software lists are split into segments since they were serialised
+        }
+        
+        @Override
+        public void write(Data content, CacheDataOutput output) {
+            content.statistics.write(output);
+            output.writeInt(content.size());
+            content.values().forEach(softwareList -> softwareList.writeSummary(output));
+            content.index.write(output);
+        }
+        
+        @Override
+        public Data read(CacheDataInput input) {
+            Data data = new Data();
+            data.statistics = new SoftwareStatistics(input);
+            for (int i = input.readInt(); i > 0; --i) {
+                SoftwareList softwareList = new SoftwareList(input, source);
+                data.put(softwareList.getName(), softwareList);
+            }
+            data.index = new SoftwareSearchIndex(input); // decoded on first use
+            return data;
+        }
+    };
+    
+    /**
+     * Read segments on demand and unload the least recently used lists once too many of them are loaded.
+     */
+    private final SoftwareList.Source source = new SoftwareList.Source() {
+        
+        @Override
+        public SoftwareList load(SoftwareList softwareList) {
+            String name = softwareList.getName();
+            try {
+                SoftwareList content = SoftwareListCache.this.load(getSegmentPath(name), SEGMENT_CODEC);
+                if (content != null)
+                    return content;
+            } catch (Exception ex) {
+                Logger.getLogger(SoftwareListCache.class.getName()).log(Level.WARNING, "Couldn't load software list " + name, ex);
+            }
+            // the segment is gone, so the list will be rebuilt from its hash file on next start-up
+            Logger.getLogger(SoftwareListCache.class.getName()).log(Level.WARNING, "Software list {0} is missing from cache", name);
+            return new SoftwareList(name, softwareList.getDescription());
+        }
+        
+        @Override
+        public void onLoaded(SoftwareList softwareList) {
+            List<SoftwareList> victims = new ArrayList<>();
+            synchronized (loadedLists) {
+                loadedLists.add(softwareList);
+                loadedLists.removeIf(loadedList -> !loadedList.isLoaded());
+                while (loadedLists.size() > MAX_LOADED_LISTS) {
+                    SoftwareList victim = loadedLists.stream().min(
+                        Comparator.comparingLong(SoftwareList::getLastAccess)
+                    ).get();
+                    loadedLists.remove(victim);
+                    victims.add(victim);
+                }
+            }
+            victims.forEach(SoftwareList::unload);
+        }
+    };
+    
+    private static final CacheCodec<SoftwareList> SEGMENT_CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(SoftwareList content, CacheDataOutput output) {
+            content.write(output);
+        }
+        
+        @Override
+        public SoftwareList read(CacheDataInput input) {
+            return new SoftwareList(input);
+        }
+    };
+    
+    private static final CacheCodec<Version> VERSION_CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(Version content, CacheDataOutput output) {
+            output.writeInstantMap(content);
+        }
+        
+        @Override
+        public Version read(CacheDataInput input) {
+            return input.readInstantMap(new Version());
+        }
+    };
+    
     public static String convertPathToName(Path path) {
         // convert path to software list name (fact as of MAME 0.169: filename is the softlist name even if /softwarelist/@name within the xml file differs)
         return path.getFileName().toString().replaceFirst("\\.xml$", "");
     }
     
+    private static Path getSegmentPath(String softwareList) {
+        return SEGMENT_FOLDER.resolve(softwareList + SEGMENT_EXTENSION);
+    }
+    
     private Data data;
+    private final Set<SoftwareList> loadedLists = new HashSet<>();
     
     private int processingfileCount;
     private AtomicInteger processedfileCount;
+    private long processingByteCount;
+    private long processingStart;
     
     public SoftwareListCache() throws ClassNotFoundException, IOException {
         super("softlist");
     }
     
+    @Override
+    protected CacheCodec<Data> getCodec() {
+        return codec;
+    }
+    
+    @Override
+    protected CacheCodec<Version> getVersionCodec() {
+        return VERSION_CODEC;
+    }
+    
     public Map<String, SoftwareList> get() {
         return data;
     }
@@ -82,6 +224,10 @@ public class SoftwareListCache extends Cache<SoftwareListCache.Data, SoftwareLis
         return data.statistics;
     }
     
+    public SoftwareSearchIndex getSearchIndex() {
+        return data.index;
+    }
+    
     @Override
     protected Version loadVersion() throws ClassNotFoundException, IOException {
         Version _version = null;
@@ -112,9 +258,10 @@ public class SoftwareListCache extends Cache<SoftwareListCache.Data, SoftwareLis
     @Override
     public List<Callable<Void>> threadedLoad() throws ClassNotFoundException, IOException {
         List<Callable<Void>> loaders = new ArrayList<>();
+        Map<Path, Long> updatedPaths = new HashMap<>();
         load();
         
-        // check for new or updated dat files
+        // check for new or updated dat files, only the segments of unchanged ones being loaded
         for (String hashString : Configuration.Manager.getFolderPaths(Property.HASH)) {
             Path hashPath = Paths.get(hashString);
             if (Files.exists(hashPath)) Files.find(
@@ -124,8 +271,13 @@ public class SoftwareListCache extends Cache<SoftwareListCache.Data, SoftwareLis
                     String key = path.toString();
                     if (Files.exists(path)) {
                         Instant value = Files.getLastModifiedTime(path).toInstant();
-                        if (!version.containsKey(key) || !version.get(key).equals(value)) { 
-                            loaders.add(new SoftwareListLoader(this, path));
+                        String name = convertPathToName(path);
+                        if (
+                            !version.containsKey(key) || !version.get(key).equals(value) ||
+                            !data.containsKey(name) || Files.notExists(getSegmentPath(name))
+                        ) {
+                            data.remove(name); // a previous version of the list mustn't be counted twice in statistics
+                            updatedPaths.put(path, Files.size(path));
                             version.put(key, value);
                             ++processingfileCount;
                         }
@@ -136,6 +288,14 @@ public class SoftwareListCache extends Cache<SoftwareListCache.Data, SoftwareLis
             );
         }
         
+        // largest files first, so that the biggest lists don't end up being parsed alone once all the others are done
+        updatedPaths.entrySet().stream().sorted(
+            Map.Entry.<Path, Long>comparingByValue().reversed()
+        ).forEach(entry -> {
+            loaders.add(new SoftwareListLoader(this, entry.getKey()));
+            processingByteCount += entry.getValue();
+        });
+        
         // check for deleted dat files
         List<String> removal = new ArrayList<>();
         for (String key : version.keySet()) {
@@ -147,22 +307,42 @@ public class SoftwareListCache extends Cache<SoftwareListCache.Data, SoftwareLis
             version.remove(key);
             key = convertPathToName(Paths.get(key));
             data.remove(key);
+            deleteSegment(key);
         });
         
         // update state accordingly to previous checks
         if (processingfileCount > 0) {
             clearVersion(); // flag cache as temporarily invalid as it's about to be updated
             processedfileCount = new AtomicInteger();
+            processingStart = System.currentTimeMillis();
         } else if (removal.size() > 0)
             save();
         
         return loaders;
     }
     
+    private void deleteSegment(String softwareList) {
+        try {
+            Files.deleteIfExists(getSegmentPath(softwareList));
+        } catch (IOException ex) {
+            Logger.getLogger(SoftwareListCache.class.getName()).log(Level.WARNING, "Couldn't delete outdated software list " + softwareList, ex);
+        }
+    }
+    
+    /**
+     * Called concurrently by loaders: each of them writes its own segment, the manifest being written by the last one.
+     */
     public void save(SoftwareList softwareList) throws IOException {
+        if (Files.notExists(SEGMENT_FOLDER))
+            Files.createDirectories(SEGMENT_FOLDER);
+        save(softwareList, getSegmentPath(softwareList.getName()), SEGMENT_CODEC);
+        data.index.add(softwareList);
         data.put(softwareList.getName(), softwareList);
         
         if (processedfileCount.incrementAndGet() == processingfileCount) try {
+            Logger.getLogger(SoftwareListCache.class.getName()).log(Level.INFO, "Built {0} software lists from {1} KB of hash files in {2} ms", new Object[] {
+                processingfileCount, processingByteCount / 1024, System.currentTimeMillis() - processingStart
+            });
             // cache has been entirely processed and is valid for use throughout sessions
             save();
         } catch (Exception ex) {
@@ -19,6 +19,7 @@ package net.babelsoft.negatron.io.cache;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -28,8 +29,10 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -42,8 +45,8 @@ import net.babelsoft.negatron.io.loader.SoftwareStatusLoader;
 import net.babelsoft.negatron.io.loader.ThreadedCacheLoader;
 import net.babelsoft.negatron.model.Status;
 import net.babelsoft.negatron.model.item.Machine;
-import net.babelsoft.negatron.model.item.Software;
 import net.babelsoft.negatron.model.item.SoftwareList;
+import net.babelsoft.negatron.util.UpdateDispatcher;
 
 /**
  *
@@ -56,10 +59,116 @@ public class StatusCache extends Cache<StatusCache.Data, StatusVersion> implemen
         
         protected HashMap<String, Status> machineStatuses;
         protected HashMap<String, HashMap<String, Status>> softwareStatuses;
+        protected HashMap<String, Long> romsetFingerprints;
+        protected transient FolderSnapshot hashFolders;
+        protected transient FolderSnapshot romFolders;
     }
     
+    private static final CacheCodec<Data> CODEC = new CacheCodec<>() {
+        
+        private void write(Map<String, Status> statuses, CacheDataOutput output) {
+            output.writeInt(statuses.size());
+            statuses.forEach((key, value) -> {
+                output.writeString(key);
+                output.writeEnum(value);
+            });
+        }
+        
+        private HashMap<String, Status> read(CacheDataInput input, Status[] values) {
+            int size = input.readInt();
+            HashMap<String, Status> statuses = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; ++i)
+                statuses.put(input.readString(), input.readEnum(values));
+            return statuses;
+        }
+        
+        @Override
+        public int getVersion() {
+            return 3;
+        }
+        
+        @Override
+        public void write(Data content, CacheDataOutput output) {
+            output.writeBoolean(content.machineStatuses != null);
+            if (content.machineStatuses != null)
+                write(content.machineStatuses, output);
+            
+            output.writeBoolean(content.softwareStatuses != null);
+            if (content.softwareStatuses != null) {
+                output.writeInt(content.softwareStatuses.size());
+                content.softwareStatuses.forEach((key, value) -> {
+                    output.writeString(key);
+                    write(value, output);
+                });
+            }
+            
+            output.writeBoolean(content.romsetFingerprints != null);
+            if (content.romsetFingerprints != null) {
+                output.writeInt(content.romsetFingerprints.size());
+                content.romsetFingerprints.forEach((key, value) -> {
+                    output.writeString(key);
+                    output.writeLong(value);
+                });
+            }
+            
+            output.writeBoolean(content.hashFolders != null);
+            if (content.hashFolders != null)
+                content.hashFolders.write(output);
+            output.writeBoolean(content.romFolders != null);
+            if (content.romFolders != null)
+                content.romFolders.write(output);
+        }
+        
+        @Override
+        public Data read(CacheDataInput input) {
+            Status[] values = Status.values();
+            Data data = new Data();
+            
+            if (input.readBoolean())
+                data.machineStatuses = read(input, values);
+            
+            if (input.readBoolean()) {
+                data.softwareStatuses = new HashMap<>();
+                for (int i = input.readInt(); i > 0; --i)
+                    data.softwareStatuses.put(input.readString(), read(input, values));
+            }
+            
+            if (input.readBoolean()) {
+                int size = input.readInt();
+                data.romsetFingerprints = new HashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; ++i)
+                    data.romsetFingerprints.put(input.readString(), input.readLong());
+            }
+            
+            if (input.readBoolean())
+                data.hashFolders = new FolderSnapshot(input);
+            if (input.readBoolean())
+                data.romFolders = new FolderSnapshot(input);
+            return data;
+        }
+    };
+    
+    private static final CacheCodec<StatusVersion> VERSION_CODEC = new CacheCodec<>() {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public void write(StatusVersion content, CacheDataOutput output) {
+            content.write(output);
+        }
+        
+        @Override
+        public StatusVersion read(CacheDataInput input) {
+            return new StatusVersion(input);
+        }
+    };
+    
     private Data data;
     private StatusVersion newVersion;
+    private HashMap<String, Long> newRomsetFingerprints;
     
     private final Map<String, Machine> machines;
     private final Map<String, SoftwareList> softwareLists;
@@ -72,46 +181,138 @@ public class StatusCache extends Cache<StatusCache.Data, StatusVersion> implemen
         this.softwareLists = softwareLists;
     }
     
+    @Override
+    protected CacheCodec<Data> getCodec() {
+        return CODEC;
+    }
+    
+    @Override
+    protected CacheCodec<StatusVersion> getVersionCodec() {
+        return VERSION_CODEC;
+    }
+    
     private void checkVersion(
-        List<String> paths,
+        FolderSnapshot snapshot, List<String> paths,
         Supplier<Instant> getLastCreationTime, Consumer<Instant> setLastCreationTime,
         Supplier<Instant> getLastModifiedTime, Consumer<Instant> setLastModifiedTime
     ) {
-        paths.stream().map(
-            path -> Paths.get(path)
-        ).filter(
-            path -> Files.exists(path)
-        ).forEach(path -> {
-            try {
-                Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+        FolderSnapshot.Times times = snapshot.scan(paths);
+        
+        if (getLastCreationTime.get().isBefore(times.getLastCreationTime()))
+            setLastCreationTime.accept(times.getLastCreationTime());
+        
+        if (getLastModifiedTime.get().isBefore(times.getLastModifiedTime()))
+            setLastModifiedTime.accept(times.getLastModifiedTime());
+    }
+    
+    private static long hash(long hash, long value) {
+        hash ^= value;
+        hash *= 0x100000001B3L;
+        return hash ^ (hash >>> 29);
+    }
+    
+    private static long hash(long hash, Path path, BasicFileAttributes attrs) {
+        hash = hash(hash, path.toString().hashCode());
+        hash = hash(hash, attrs.size());
+        return hash(hash, attrs.lastModifiedTime().toMillis());
+    }
+    
+    /**
+     * Fingerprint the files of every romset found in the ROM folders, whether zipped, 7-zipped or extracted in a sub-folder
+     * along with its CHDs, from their sizes and modified times.
+     * Fingerprints of a romset found in several ROM folders are summed up so that the listing order doesn't matter.
+     */
+    private static HashMap<String, Long> fingerprintRomsets(List<String> paths) {
+        HashMap<String, Long> fingerprints = new HashMap<>();
+        
+        for (int i = 0; i < paths.size(); ++i) {
+            Path folder = Paths.get(paths.get(i));
+            if (Files.notExists(folder))
+                continue;
+            
+            final long seed = hash(0xCBF29CE484222325L, i);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                    String name = entry.getFileName().toString();
+                    long[] fingerprint = { seed };
                     
-                    @Override
-                    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
-                        Instant time = attrs.creationTime().toInstant();
-                        if (getLastCreationTime.get().isBefore(time))
-                            setLastCreationTime.accept(time);
-                        
-                        time = attrs.lastModifiedTime().toInstant();
-                        if (getLastModifiedTime.get().isBefore(time))
-                            setLastModifiedTime.accept(time);
-                        
-                        return FileVisitResult.CONTINUE;
+                    if (attrs.isDirectory()) {
+                        Files.walkFileTree(entry, new SimpleFileVisitor<Path>() {
+                            @Override
+                            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
+                                fingerprint[0] += hash(seed, entry.relativize(path), attrs);
+                                return FileVisitResult.CONTINUE;
+                            }
+                        });
+                    } else {
+                        String lowerName = name.toLowerCase();
+                        if (!lowerName.endsWith(".zip") && !lowerName.endsWith(".7z"))
+                            continue;
+                        fingerprint[0] = hash(seed, entry.getFileName(), attrs);
+                        name = name.substring(0, name.lastIndexOf('.'));
                     }
-                });
+                    
+                    fingerprints.merge(name, fingerprint[0], Long::sum);
+                }
             } catch (IOException ex) {
-                Logger.getLogger(StatusCache.class.getName()).log(Level.WARNING, "Couldn't retrieve status versioning", ex);
+                Logger.getLogger(StatusCache.class.getName()).log(Level.WARNING, "Couldn't fingerprint romsets in " + folder, ex);
             }
+        }
+        
+        return fingerprints;
+    }
+    
+    /**
+     * @return the machines to verify again because the files of their own romset, of their parent's or of their BIOS
+     * have been added, changed or removed since the previous verification
+     */
+    private Set<String> getModifiedMachines() {
+        Set<String> romsets = new HashSet<>();
+        newRomsetFingerprints.forEach((name, fingerprint) -> {
+            if (!fingerprint.equals(data.romsetFingerprints.get(name)))
+                romsets.add(name);
+        });
+        data.romsetFingerprints.keySet().stream().filter(
+            name -> !newRomsetFingerprints.containsKey(name)
+        ).forEach(romsets::add);
+        
+        if (romsets.isEmpty())
+            return romsets;
+        
+        // device ROMs are verified along each machine using the device,
+        // that relationship being read from the ROM segment alone rather than from the whole lazily decoded detail
+        boolean isDeviceModified = romsets.stream().anyMatch(name -> {
+            Machine machine = machines.get(name);
+            return machine == null || !machine.isRunnable();
         });
+        
+        Set<String> modifiedMachines = new HashSet<>();
+        machines.values().forEach(machine -> {
+            Machine parent = machine.getParent();
+            if (
+                romsets.contains(machine.getName()) || romsets.contains(machine.getRomOf()) ||
+                parent != null && (romsets.contains(parent.getName()) || romsets.contains(parent.getRomOf())) ||
+                isDeviceModified && machine.getRomDevices().stream().anyMatch(romsets::contains)
+            )
+                modifiedMachines.add(machine.getName());
+        });
+        return modifiedMachines;
     }
     
-    private void updateMachineUI() {
+    /**
+     * @param verifiedNames romsets about to be verified again, left for their loader to update
+     */
+    private void updateMachineUI(Set<String> verifiedNames) {
         if (data.machineStatuses == null)
             return;
         
         data.machineStatuses.entrySet().forEach(entry -> {
+            if (verifiedNames.contains(entry.getKey()))
+                return;
             Machine machine = machines.get(entry.getKey());
             if (machine != null)
-                machine.setStatus(entry.getValue());
+                UpdateDispatcher.Instance.post(machine, Machine.STATUS, entry.getValue());
         });
     }
     
@@ -122,11 +323,10 @@ public class StatusCache extends Cache<StatusCache.Data, StatusVersion> implemen
         data.softwareStatuses.entrySet().forEach(entry -> {
             SoftwareList softwareList = softwareLists.get(entry.getKey());
             if (softwareList != null) {
-                entry.getValue().entrySet().forEach(subEntry -> {
-                    Software software = softwareList.getSoftware(subEntry.getKey());
-                    if (software != null)
-                        software.setStatus(subEntry.getValue());
-                });
+                // lazy software lists keep statuses aside until they get loaded
+                entry.getValue().entrySet().forEach(
+                    subEntry -> softwareList.setStatus(subEntry.getKey(), subEntry.getValue())
+                );
             }
         });
     }
@@ -147,14 +347,20 @@ public class StatusCache extends Cache<StatusCache.Data, StatusVersion> implemen
         if (!mameVersion.equals(newVersion.getMameVersion()))
             newVersion.setMameVersion(mameVersion);
         
+        // only folders changed since the previous start-up are listed again
+        if (data.hashFolders == null)
+            data.hashFolders = new FolderSnapshot();
+        if (data.romFolders == null)
+            data.romFolders = new FolderSnapshot();
+        
         checkVersion(
-            Configuration.Manager.getFolderPaths(Property.HASH),
+            data.hashFolders, Configuration.Manager.getFolderPaths(Property.HASH),
             newVersion::getSoftlistLastCreationTime, newVersion::setSoftlistLastCreationTime,
             newVersion::getSoftlistLastModifiedTime, newVersion::setSoftlistLastModifiedTime
         );
         
         checkVersion(
-            Configuration.Manager.getFolderPaths(Property.ROM),
+            data.romFolders, Configuration.Manager.getFolderPaths(Property.ROM),
             newVersion::getRomLastCreationTime, newVersion::setRomLastCreationTime,
             newVersion::getRomLastModifiedTime, newVersion::setRomLastModifiedTime
         );
@@ -162,16 +368,32 @@ public class StatusCache extends Cache<StatusCache.Data, StatusVersion> implemen
         // create required loaders
         List<InitialisedCallable<Void>> loaders = new ArrayList<>();
         
-        if (newVersion.isMachineModified() || newVersion.isRomModified())
+        if (
+            newVersion.isMachineModified() || data.machineStatuses == null || data.romsetFingerprints == null
+        ) {
+            newRomsetFingerprints = fingerprintRomsets(Configuration.Manager.getFolderPaths(Property.ROM));
             loaders.add(new MachineStatusLoader(this));
-        else
-            updateMachineUI();
+        } else if (newVersion.isRomModified()) {
+            // same MAME version: only verify again the romsets whose files have changed
+            newRomsetFingerprints = fingerprintRomsets(Configuration.Manager.getFolderPaths(Property.ROM));
+            Set<String> modifiedMachines = getModifiedMachines();
+            updateMachineUI(modifiedMachines);
+            if (modifiedMachines.isEmpty())
+                saveMachines(data.machineStatuses);
+            else
+                loaders.add(new MachineStatusLoader(this, modifiedMachines, data.machineStatuses));
+        } else
+            updateMachineUI(Set.of());
         
         if (newVersion.isSoftwareListModified() || newVersion.isRomModified())
             loaders.add(new SoftwareStatusLoader(this));
         else
             updateSoftwareUI();
         
+        // status loaders save the snapshots along with their statuses
+        if (loaders.isEmpty() && (data.hashFolders.isModified() || data.romFolders.isModified()))
+            save();
+        
         return loaders;
     }
 
@@ -185,6 +407,7 @@ public class StatusCache extends Cache<StatusCache.Data, StatusVersion> implemen
 
     public void saveMachines(HashMap<String, Status> statuses) throws IOException {
         data.machineStatuses = statuses;
+        data.romsetFingerprints = newRomsetFingerprints;
         version.setMameVersion(newVersion.getMameVersion());
         version.setRomLastCreationTime(newVersion.getRomLastCreationTime());
         version.setRomLastModifiedTime(newVersion.getRomLastModifiedTime());
@@ -44,6 +44,22 @@ class StatusVersion implements Serializable {
         romLastModifiedTime = Instant.MIN;
     }
     
+    StatusVersion(CacheDataInput input) {
+        mameVersion = input.readString();
+        softlistLastCreationTime = input.readInstant();
+        softlistLastModifiedTime = input.readInstant();
+        romLastCreationTime = input.readInstant();
+        romLastModifiedTime = input.readInstant();
+    }
+    
+    void write(CacheDataOutput output) {
+        output.writeString(mameVersion);
+        output.writeInstant(softlistLastCreationTime);
+        output.writeInstant(softlistLastModifiedTime);
+        output.writeInstant(romLastCreationTime);
+        output.writeInstant(romLastModifiedTime);
+    }
+    
     public StatusVersion(StatusVersion original) {
         mameVersion = original.mameVersion;
         softlistLastCreationTime = original.softlistLastCreationTime;
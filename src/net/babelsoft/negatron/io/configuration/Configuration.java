@@ -96,6 +96,8 @@ public enum Configuration {
     private final String SOUND_ENTRY = "sound";
     private final String VIDEO_ENTRY = "video";
     private final String VIEW3D_ENTRY = "view3d";
+    private final String CACHE_WORKERS_ENTRY = "cacheWorkers";
+    private final String LIST_XML_SCANNER_ENTRY = "listXmlScanner";
     
     private final String MAME_CHEAT_MENU_ENTRY = "cheat";
     
@@ -122,6 +124,8 @@ public enum Configuration {
     private Boolean soundEnabled;
     private Boolean videoEnabled;
     private Boolean view3dEnabled;
+    private int cacheWorkerCount;
+    private boolean listXmlScannerEnabled;
     private final Map<Property, List<String>> folders;
     private final Map<Property, List<PathCharset>> files;
     private final Map<Property, String> primaryMachineFolders;
@@ -201,6 +205,8 @@ public enum Configuration {
                     case SOUND_ENTRY -> soundEnabled = digitToBoolean(content[1]);
                     case VIDEO_ENTRY -> videoEnabled = digitToBoolean(content[1]);
                     case VIEW3D_ENTRY -> view3dEnabled = digitToBoolean(content[1]);
+                    case CACHE_WORKERS_ENTRY -> cacheWorkerCount = Integer.parseInt(content[1].trim());
+                    case LIST_XML_SCANNER_ENTRY -> listXmlScannerEnabled = digitToBoolean(content[1]);
                     default -> Arrays.stream(Property.values()).filter(
                         property -> property.name.equals(content[0])
                     ).findAny().ifPresent(
@@ -761,6 +767,8 @@ public enum Configuration {
             writeConfigurationLine(writer, SOUND_ENTRY, soundEnabled);
             writeConfigurationLine(writer, VIDEO_ENTRY, videoEnabled);
             writeConfigurationLine(writer, VIEW3D_ENTRY, view3dEnabled);
+            writeConfigurationLine(writer, CACHE_WORKERS_ENTRY, Integer.toString(cacheWorkerCount));
+            writeConfigurationLine(writer, LIST_XML_SCANNER_ENTRY, listXmlScannerEnabled);
         }
     }
     
@@ -983,6 +991,20 @@ public enum Configuration {
         return view3dEnabled;
     }
     
+    /**
+     * @return the number of MAME processes or decoding threads to run in parallel while building the caches, 0 for automatic
+     */
+    public int getCacheWorkerCount() {
+        return cacheWorkerCount;
+    }
+    
+    /**
+     * @return whether MAME -listxml output should be parsed by the dedicated scanner instead of SAX
+     */
+    public boolean isListXmlScannerEnabled() {
+        return listXmlScannerEnabled;
+    }
+    
     public List<String> getFolderPaths(Property property) {
         if (property.domain != Domain.EXTRAS_INFORMATION && folders.get(property) != null)
             return folders.get(property);
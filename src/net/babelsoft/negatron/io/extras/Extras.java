@@ -17,10 +17,6 @@
  */
 package net.babelsoft.negatron.io.extras;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -32,6 +28,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,7 +53,6 @@ import net.babelsoft.negatron.util.Strings;
  * @author capan
  */
 public class Extras {
-    private final static int BUFFER_SIZE = 2048;
     private final static String PDF_EXT = ".pdf";
     private final static String TXT_EXT = ".txt";
     private final static String ZIP_EXT = ".zip";
@@ -68,6 +64,17 @@ public class Extras {
     }
     
     public static Path toPath(String system, String name, Property property, String... extensions) {
+        if (ExtrasIndex.Instance.isReady(property))
+            return Arrays.stream(extensions).flatMap(
+                extension -> Configuration.Manager.getFolderPaths(property).stream().map(
+                    stringPath -> system != null ? Paths.get(stringPath, system) : Paths.get(stringPath)
+                ).filter(
+                    folder -> ExtrasIndex.Instance.contains(folder, name + extension)
+                ).map(
+                    folder -> folder.resolve(name + extension)
+                )
+            ).findFirst().orElse(null);
+        
         return Arrays.stream(extensions).flatMap(
             extension -> Configuration.Manager.getFolderPaths(property).stream().filter(
                 stringPath -> {
@@ -112,16 +119,8 @@ public class Extras {
         ) {
             if (stream != null) {
                 Path tmpPath = Cache.ROOT_FOLDER.resolve("tmp" + PDF_EXT);
-                try (
-                    FileOutputStream file = new FileOutputStream(tmpPath.toFile())
-                ) {
-                    int count;
-                    byte buffer[] = new byte[BUFFER_SIZE];
-                    while ((count = stream.read(buffer, 0, BUFFER_SIZE)) != -1)
-                        file.write(buffer, 0, count);
-                    file.close();
-                    path = tmpPath;
-                }
+                Files.copy(stream, tmpPath, StandardCopyOption.REPLACE_EXISTING);
+                path = tmpPath;
             }
         // if any exceptions are raised, it means that no corresponding resources are available, so silently swallow exceptions and return null
         } catch (IOException ex) { }
@@ -154,47 +153,41 @@ public class Extras {
             return newZipInputStream(system, name, property, extensions);
     }
     
+    /**
+     * @return a stream reading the given entry straight from the zip file, which must be kept open until the stream gets closed
+     */
     public static InputStream newInputStream(ZipFile file, ZipEntry entry) {
-        try (
-            InputStream entryStream = file.getInputStream(entry);
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            BufferedOutputStream outputStream = new BufferedOutputStream(byteStream, BUFFER_SIZE);
-        ) {
-            int count;
-            
-            byte buffer[] = new byte[BUFFER_SIZE];
-            while ((count = entryStream.read(buffer, 0, BUFFER_SIZE)) != -1)
-                outputStream.write(buffer, 0, count);
-            outputStream.flush();
-            
-            return new ByteArrayInputStream(byteStream.toByteArray());
+        try {
+            return file.getInputStream(entry);
         } catch (IOException ex) {
             return null;
         }
     }
     
     private static InputStream newZipInputStream(String system, String name, Property property, String... extensions) throws IOException {
+        boolean isIndexed = ExtrasIndex.Instance.isReady(property);
+        
         return Configuration.Manager.getFolderPaths(property).stream().map(
             stringPath -> stringPath.endsWith(ZIP_EXT) ? stringPath : stringPath + ZIP_EXT
         ).filter(
             stringPath -> {
                 Path path = Paths.get(stringPath);
-                return Files.exists(path) && !Files.isDirectory(path);
+                if (isIndexed) // only open zip files actually holding the resource
+                    return toZipPath(system, name, extensions).anyMatch(zipPath -> ExtrasIndex.Instance.contains(path, zipPath));
+                else
+                    return Files.exists(path) && !Files.isDirectory(path);
             }
         ).map(
-            stringPath -> { try (
-                ZipFile file = new ZipFile(stringPath)
-            ) {
-                return toZipPath(system, name, extensions).map(
-                    zipPath -> file.getEntry(zipPath)
-                ).filter(
-                    zipEntry -> zipEntry != null && !zipEntry.isDirectory()
-                ).findFirst().map(
-                    entry -> newInputStream(file, entry)
-                ).orElse(null);
-            } catch (IOException ex) {
-                return null;
-            }}
+            stringPath -> toZipPath(system, name, extensions).map(
+                zipPath -> { try {
+                    // pooled zip files stay open, so entries get streamed instead of being buffered first
+                    return ZipFilePool.Instance.newInputStream(Paths.get(stringPath), zipPath);
+                } catch (IOException ex) {
+                    return null;
+                }}
+            ).filter(
+                inputStream -> inputStream != null
+            ).findFirst().orElse(null)
         ).filter(
             inputStream -> inputStream != null
         ).findFirst().orElse(null);
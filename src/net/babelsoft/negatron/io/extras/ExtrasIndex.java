@@ -0,0 +1,302 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.extras;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import net.babelsoft.negatron.io.cache.ExtrasIndexCache;
+import net.babelsoft.negatron.io.cache.ExtrasIndexCache.Listing;
+import net.babelsoft.negatron.io.configuration.Configuration;
+import net.babelsoft.negatron.io.configuration.Property;
+import net.babelsoft.negatron.util.DirectoryWatchService.OnFileChangeListener;
+import net.babelsoft.negatron.util.IterableEnumeration;
+import net.babelsoft.negatron.util.Shell;
+import net.babelsoft.negatron.util.SimpleDirectoryWatchService;
+
+/**
+ * Index of the files available in the extras folders and zip files, so that looking up a resource is a hash hit
+ * instead of probing the file system or parsing the central directory of a zip file.<br />
+ * Each folder is listed with its direct subfolders, i.e. system folders, and each zip file with all its entries.
+ * The index of a property gets built in the background on first use, reusing the listings of the previous session
+ * which are still up to date, and is kept up to date by watching the configured folders and zip files.
+ * System folders aren't watched, to spare the watches the OS allows: they're checked again whenever their configured folder changes.
+ * Until then, lookups must fall back on the file system.
+ * File names are looked up regardless of case on Windows and macOS, as their default file systems do, unlike zip entries.
+ * @author capan
+ */
+public enum ExtrasIndex {
+    Instance;
+    
+    private static final String ZIP_EXT = ".zip";
+    private static final String FOLDER_SUFFIX = "/";
+    private static final boolean IS_CASE_INSENSITIVE = Shell.isWindows() || Shell.isMacOs();
+    private static final long SAVE_DELAY = 5; // in seconds, so that bursts of changes only rewrite the cache once
+    
+    private final Map<Property, List<String>> indexedFolders; // property > folders as configured when indexed
+    private final Set<Property> pendingProperties;
+    private final Map<String, Set<String>> listings; // folder or zip file path > file names or entry names
+    private final Set<String> foldedListings; // folder paths of which file names are listed in lower case
+    private final Map<Path, OnFileChangeListener> watchers;
+    private final Set<Path> pendingPaths;
+    private final AtomicBoolean isSavePending;
+    private final ScheduledExecutorService executor;
+    private ExtrasIndexCache cache;
+    private ExtrasIndexCache.Data data;
+    
+    ExtrasIndex() {
+        indexedFolders = new ConcurrentHashMap<>();
+        pendingProperties = ConcurrentHashMap.newKeySet();
+        listings = new ConcurrentHashMap<>();
+        foldedListings = ConcurrentHashMap.newKeySet();
+        watchers = new ConcurrentHashMap<>();
+        pendingPaths = ConcurrentHashMap.newKeySet();
+        isSavePending = new AtomicBoolean();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "extras-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * @return whether the index of the given property is up to date with its configured folders,
+     * the index getting built in the background otherwise
+     */
+    public boolean isReady(Property property) {
+        List<String> folders = Configuration.Manager.getFolderPaths(property);
+        if (folders.equals(indexedFolders.get(property)))
+            return true;
+        
+        if (pendingProperties.add(property)) {
+            List<String> foldersToIndex = new ArrayList<>(folders);
+            executor.execute(() -> {
+                try {
+                    index(property, foldersToIndex);
+                } catch (RuntimeException ex) {
+                    Logger.getLogger(ExtrasIndex.class.getName()).log(Level.WARNING, "Couldn't index " + property.name(), ex);
+                } finally {
+                    pendingProperties.remove(property);
+                }
+            });
+        }
+        return false;
+    }
+    
+    /**
+     * @param path a folder or zip file path
+     * @param name a file name if path is a folder or an entry name if path is a zip file
+     * @return whether the given file or entry exists
+     */
+    public boolean contains(Path path, String name) {
+        String key = path.toString();
+        Set<String> listing = listings.get(key);
+        if (listing == null)
+            return false;
+        return listing.contains(foldedListings.contains(key) ? name.toLowerCase() : name);
+    }
+    
+    private void index(Property property, List<String> folders) {
+        long start = System.nanoTime();
+        loadCache();
+        
+        for (String folder : folders) {
+            Path folderPath = Paths.get(folder);
+            if (Files.isDirectory(folderPath))
+                listFolder(folderPath, true);
+            
+            Path zipPath = Paths.get(folder.endsWith(ZIP_EXT) ? folder : folder + ZIP_EXT);
+            if (Files.isRegularFile(zipPath))
+                listZip(zipPath);
+        }
+        indexedFolders.put(property, folders);
+        saveCache();
+        
+        Logger.getLogger(ExtrasIndex.class.getName()).log(Level.FINE, "Indexed {0} in {1} ms", new Object[] {
+            property.name(), (System.nanoTime() - start) / 1_000_000
+        });
+    }
+    
+    private void loadCache() {
+        if (cache == null) try {
+            cache = new ExtrasIndexCache();
+            data = cache.load();
+        } catch (ClassNotFoundException | IOException ex) {
+            Logger.getLogger(ExtrasIndex.class.getName()).log(Level.WARNING, "Couldn't load extras index", ex);
+            data = new ExtrasIndexCache.Data();
+        }
+    }
+    
+    private void saveCache() {
+        if (cache != null) try {
+            cache.save(data);
+        } catch (IOException ex) {
+            Logger.getLogger(ExtrasIndex.class.getName()).log(Level.WARNING, "Couldn't save extras index", ex);
+        }
+    }
+    
+    private void scheduleSave() {
+        if (isSavePending.compareAndSet(false, true))
+            executor.schedule(() -> {
+                isSavePending.set(false);
+                saveCache();
+            }, SAVE_DELAY, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * List the files of the given folder, subfolders being listed with a trailing slash, if it has been modified.
+     * @param isRoot whether the folder is a configured folder, which gets watched and whose subfolders are listed as well
+     */
+    private void listFolder(Path folder, boolean isRoot) {
+        String key = folder.toString();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(folder, BasicFileAttributes.class);
+            Listing listing = data.get(key);
+            
+            if (listing == null || !listing.getModifiedTime().equals(attributes.lastModifiedTime().toInstant())) {
+                Set<String> entries = new HashSet<>();
+                try (DirectoryStream<Path> paths = Files.newDirectoryStream(folder)) {
+                    for (Path path : paths) {
+                        String name = path.getFileName().toString();
+                        entries.add(Files.isDirectory(path) ? name + FOLDER_SUFFIX : name);
+                    }
+                }
+                listing = new Listing(attributes.lastModifiedTime().toInstant(), 0, entries);
+                data.put(key, listing);
+            }
+            if (IS_CASE_INSENSITIVE) {
+                Set<String> foldedEntries = new HashSet<>();
+                listing.getEntries().forEach(entry -> foldedEntries.add(entry.toLowerCase()));
+                foldedListings.add(key);
+                listings.put(key, foldedEntries);
+            } else
+                listings.put(key, listing.getEntries());
+            if (isRoot) {
+                watch(folder, null, () -> listFolder(folder, true));
+                listing.getEntries().stream().filter(
+                    entry -> entry.endsWith(FOLDER_SUFFIX)
+                ).forEach(
+                    entry -> listFolder(folder.resolve(entry.substring(0, entry.length() - FOLDER_SUFFIX.length())), false)
+                );
+            }
+        } catch (IOException ex) {
+            // folder removed in the meantime
+            data.remove(key);
+            listings.remove(key);
+        }
+    }
+    
+    /**
+     * List the entries of the given zip file if it has been modified.
+     */
+    private void listZip(Path zip) {
+        String key = zip.toString();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(zip, BasicFileAttributes.class);
+            Listing listing = data.get(key);
+            
+            if (
+                listing == null || listing.getSize() != attributes.size() ||
+                !listing.getModifiedTime().equals(attributes.lastModifiedTime().toInstant())
+            ) {
+                Set<String> entries = new HashSet<>();
+                try (ZipFilePool.Lease lease = ZipFilePool.Instance.lease(zip)) {
+                    for (ZipEntry entry : IterableEnumeration.make(lease.getZipFile().entries()))
+                        if (!entry.isDirectory())
+                            entries.add(entry.getName());
+                }
+                listing = new Listing(attributes.lastModifiedTime().toInstant(), attributes.size(), entries);
+                data.put(key, listing);
+            }
+            listings.put(key, listing.getEntries());
+            watch(zip.getParent(), zip.getFileName().toString(), () -> listZip(zip));
+        } catch (IOException ex) {
+            // zip file removed in the meantime or corrupted
+            data.remove(key);
+            listings.remove(key);
+        }
+    }
+    
+    /**
+     * List the given path again each time it gets modified.
+     * @param fileName the file to watch in the given folder, or null to watch the folder content
+     */
+    private void watch(Path folder, String fileName, Runnable relist) {
+        Path path = fileName != null ? folder.resolve(fileName) : folder;
+        if (folder == null || watchers.containsKey(path))
+            return;
+        
+        OnFileChangeListener listener = new OnFileChangeListener() {
+            
+            private void onChange() {
+                // coalesce bursts of events
+                if (pendingPaths.add(path)) executor.execute(() -> {
+                    pendingPaths.remove(path);
+                    if (Files.exists(path))
+                        relist.run();
+                    else {
+                        data.remove(path.toString());
+                        listings.remove(path.toString());
+                    }
+                    scheduleSave();
+                });
+            }
+            
+            @Override
+            public void onFileCreate(Path filePath) {
+                onChange();
+            }
+
+            @Override
+            public void onFileModify(Path filePath) {
+                onChange();
+            }
+
+            @Override
+            public void onFileDelete(Path filePath) {
+                onChange();
+            }
+        };
+        if (watchers.putIfAbsent(path, listener) == null) try {
+            SimpleDirectoryWatchService watchService = SimpleDirectoryWatchService.getInstance();
+            if (fileName != null)
+                watchService.register(listener, folder, fileName);
+            else
+                watchService.register(listener, folder);
+            watchService.start();
+        } catch (IOException | RuntimeException ex) {
+            Logger.getLogger(ExtrasIndex.class.getName()).log(Level.WARNING, "Couldn't watch " + path, ex);
+        }
+    }
+}
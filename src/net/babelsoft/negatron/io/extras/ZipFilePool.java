@@ -0,0 +1,236 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.extras;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Pool of long-lived zip file handles, so that the central directory of an artwork archive only gets parsed
+ * once instead of on each lookup.<br />
+ * Only the most recently used archives are kept open, and a handle is opened again once its archive gets modified.
+ * Handles are reference counted, so that evicting a handle never closes streams still reading from it.
+ * Handles left unused for a while get closed, so that archives don't stay locked, e.g. against deletion on Windows.
+ * @author capan
+ */
+public enum ZipFilePool {
+    Instance;
+    
+    private static final int CAPACITY = 16;
+    private static final long IDLE_TIMEOUT = 30; // in seconds
+    
+    private static class Handle {
+        private final ZipFile zipFile;
+        private final Instant modifiedTime;
+        private final long size;
+        private int leaseCount;
+        private long lastUse;
+        private boolean isEvicted;
+        
+        Handle(ZipFile zipFile, BasicFileAttributes attributes) {
+            this.zipFile = zipFile;
+            modifiedTime = attributes.lastModifiedTime().toInstant();
+            size = attributes.size();
+            lastUse = System.nanoTime();
+        }
+        
+        boolean isIdle(long now) {
+            return leaseCount <= 0 && now - lastUse >= TimeUnit.SECONDS.toNanos(IDLE_TIMEOUT);
+        }
+        
+        boolean isUpToDate(BasicFileAttributes attributes) {
+            return size == attributes.size() && modifiedTime.equals(attributes.lastModifiedTime().toInstant());
+        }
+    }
+    
+    /**
+     * A zip file borrowed from the pool, which must be closed once done with it.
+     */
+    public class Lease implements AutoCloseable {
+        private final Handle handle;
+        private boolean isClosed;
+        
+        private Lease(Handle handle) {
+            this.handle = handle;
+        }
+        
+        public ZipFile getZipFile() {
+            return handle.zipFile;
+        }
+        
+        @Override
+        public void close() {
+            synchronized (ZipFilePool.this) {
+                if (isClosed)
+                    return;
+                isClosed = true;
+                
+                --handle.leaseCount;
+                handle.lastUse = System.nanoTime();
+                if (handle.isEvicted)
+                    closeIfUnused(handle);
+            }
+        }
+    }
+    
+    private final Map<Path, Handle> handles;
+    private final ScheduledExecutorService sweeper;
+    private boolean isSweepScheduled;
+    
+    ZipFilePool() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "zip-file-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        handles = new LinkedHashMap<>(CAPACITY, 0.75f, true) {
+            static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Handle> eldest) {
+                if (size() > CAPACITY) {
+                    evict(eldest.getValue());
+                    return true;
+                } else
+                    return false;
+            }
+        };
+    }
+    
+    private void evict(Handle handle) {
+        handle.isEvicted = true;
+        closeIfUnused(handle);
+    }
+    
+    /**
+     * Check for idle handles as long as some handles are open.
+     */
+    private void scheduleSweep() {
+        if (!isSweepScheduled) {
+            isSweepScheduled = true;
+            sweeper.schedule(this::closeIdleHandles, IDLE_TIMEOUT, TimeUnit.SECONDS);
+        }
+    }
+    
+    private synchronized void closeIdleHandles() {
+        isSweepScheduled = false;
+        long now = System.nanoTime();
+        handles.values().removeIf(handle -> {
+            if (!handle.isIdle(now))
+                return false;
+            evict(handle);
+            return true;
+        });
+        if (!handles.isEmpty())
+            scheduleSweep();
+    }
+    
+    private void closeIfUnused(Handle handle) {
+        if (handle.leaseCount <= 0) try {
+            handle.zipFile.close();
+        } catch (IOException ex) {
+            Logger.getLogger(ZipFilePool.class.getName()).log(Level.WARNING, null, ex);
+        }
+    }
+    
+    /**
+     * Borrow the given zip file, opening it if it isn't open yet or if it has been modified since it's been opened.
+     */
+    public Lease lease(Path zip) throws IOException {
+        Path path = zip.toAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        
+        synchronized (this) {
+            Lease lease = leaseIfUpToDate(path, attributes);
+            if (lease != null)
+                return lease;
+        }
+        
+        // parsing the central directory can take a while, so don't hold other leases meanwhile
+        ZipFile zipFile = new ZipFile(path.toFile());
+        Lease lease;
+        synchronized (this) {
+            lease = leaseIfUpToDate(path, attributes);
+            if (lease == null) {
+                Handle handle = handles.remove(path);
+                if (handle != null)
+                    evict(handle);
+                
+                handle = new Handle(zipFile, attributes);
+                handles.put(path, handle);
+                ++handle.leaseCount;
+                scheduleSweep();
+                return new Lease(handle);
+            }
+        }
+        zipFile.close(); // another thread opened it in the meantime
+        return lease;
+    }
+    
+    private Lease leaseIfUpToDate(Path path, BasicFileAttributes attributes) {
+        Handle handle = handles.get(path);
+        if (handle == null || !handle.isUpToDate(attributes))
+            return null;
+        
+        ++handle.leaseCount;
+        handle.lastUse = System.nanoTime();
+        return new Lease(handle);
+    }
+    
+    /**
+     * @return a stream reading the given entry straight from the zip file, or null if there's no such entry
+     */
+    public InputStream newInputStream(Path zip, String entryName) throws IOException {
+        Lease lease = lease(zip);
+        try {
+            ZipEntry entry = lease.getZipFile().getEntry(entryName);
+            if (entry == null || entry.isDirectory()) {
+                lease.close();
+                return null;
+            }
+            
+            return new FilterInputStream(lease.getZipFile().getInputStream(entry)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        lease.close();
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException ex) {
+            lease.close();
+            throw ex;
+        }
+    }
+}
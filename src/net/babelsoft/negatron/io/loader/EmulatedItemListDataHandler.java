@@ -20,6 +20,7 @@ package net.babelsoft.negatron.io.loader;
 import java.util.HashMap;
 import java.util.function.BiConsumer;
 import net.babelsoft.negatron.model.item.EmulatedItem;
+import net.babelsoft.negatron.util.StringPool;
 import net.babelsoft.negatron.util.function.HexaConsumer;
 import net.babelsoft.negatron.util.function.PentaConsumer;
 import net.babelsoft.negatron.util.function.TetraConsumer;
@@ -38,7 +39,10 @@ public abstract class EmulatedItemListDataHandler<T extends EmulatedItem<T>> ext
     private final HashMap<String, T> map;
     private final EmulatedItemFactory<T> factory;
     protected T currentItem;
-    private StringBuilder text;
+    // reused from one text element to the next, repeated values like manufacturers or years being pooled
+    private final StringBuilder text = new StringBuilder();
+    private final StringPool textPool = new StringPool();
+    private boolean isText;
 
     public EmulatedItemListDataHandler(EmulatedItemFactory<T> factory) {
         this.factory = factory;
@@ -76,8 +80,10 @@ public abstract class EmulatedItemListDataHandler<T extends EmulatedItem<T>> ext
     }
     
     protected void startTextElement() {
-        if (currentItem != null)
-            text = new StringBuilder();
+        if (currentItem != null) {
+            text.setLength(0);
+            isText = true;
+        }
     }
     
     protected <V> void startConsumeCurrentItem(BiConsumer<T, V> consumer, V value) {
@@ -114,7 +120,7 @@ public abstract class EmulatedItemListDataHandler<T extends EmulatedItem<T>> ext
     
     @Override
     public void characters(char[] chars, int start, int length) throws SAXException {
-        if (text != null)
+        if (isText)
             text.append(chars, start, length);
     }
     
@@ -126,16 +132,16 @@ public abstract class EmulatedItemListDataHandler<T extends EmulatedItem<T>> ext
     }
     
     protected void endTextElement(BiConsumer<T, String> consumer) {
-        if (text != null) {
-            consumer.accept(currentItem, text.toString());
-            text = null;
+        if (isText) {
+            consumer.accept(currentItem, textPool.intern(text));
+            isText = false;
         }
     }
     
     protected <V> void endTextElement(TriConsumer<T, String, V> consumer, V value) {
-        if (text != null) {
-            consumer.accept(currentItem, text.toString(), value);
-            text = null;
+        if (isText) {
+            consumer.accept(currentItem, textPool.intern(text), value);
+            isText = false;
         }
     }
 
@@ -24,23 +24,30 @@ import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import javafx.scene.image.Image;
 import net.babelsoft.negatron.io.cache.IconCache;
+import net.babelsoft.negatron.io.cache.IconResolver;
 import net.babelsoft.negatron.io.configuration.Configuration;
 import net.babelsoft.negatron.io.configuration.Property;
 import net.babelsoft.negatron.io.extras.Icons;
+import net.babelsoft.negatron.io.extras.ZipFilePool;
 import net.babelsoft.negatron.model.item.Machine;
 import net.babelsoft.negatron.model.item.SoftwareList;
 import net.babelsoft.negatron.util.IterableEnumeration;
-import net.babelsoft.negatron.util.function.Delegate;
 
 /**
  *
@@ -54,6 +61,12 @@ public class IconLoader implements InitialisedCallable<Void> {
     private final IconCache cache;
     private Map<String, Machine> machines;
     private LoadingObserver observer;
+    private volatile boolean isCancelled;
+    
+    /**
+     * Where an icon gets read from, either a file or an entry of a zip file.
+     */
+    private record IconSource(Path path, String zip, String entryName, Instant timestamp) { }
     
     public IconLoader(IconCache cache) {
         this.cache = cache;
@@ -66,9 +79,91 @@ public class IconLoader implements InitialisedCallable<Void> {
     }
     
     private void updateUI(String name) {
-        Machine machine = machines.get(name);
-        if (machine != null)
-            machine.setIcon( cache.get(name) );
+        // only machines currently displayed hold their icon
+        IconResolver.Instance.refresh(name);
+    }
+
+    /**
+     * Icon packs often hold tens of thousands of icons, so decoding and resampling them is shared among several workers.
+     * @return the number of threads decoding icons
+     */
+    private static int getWorkerCount() {
+        int count = Configuration.Manager.getCacheWorkerCount();
+        if (count <= 0)
+            count = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, count);
+    }
+    
+    /**
+     * Decode the given icons on a fork-join pool, each worker reading zipped icons through its own zip file handles
+     * so that workers don't contend on a single handle.
+     * @return false if the calling thread got interrupted
+     */
+    private boolean decode(List<Map.Entry<String, IconSource>> sources) throws ExecutionException {
+        int workerCount = getWorkerCount();
+        ForkJoinPool pool = new ForkJoinPool(workerCount);
+        Map<Thread, Map<String, ZipFile>> zipFiles = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        
+        try {
+            pool.submit(() -> sources.parallelStream().forEach(entry -> {
+                if (isCancelled)
+                    return;
+                
+                String key = entry.getKey();
+                IconSource source = entry.getValue();
+                try {
+                    Image image;
+                    if (source.path() != null)
+                        image = Icons.newImage(source.path(), IconCache.WIDTH);
+                    else {
+                        Map<String, ZipFile> workerZipFiles = zipFiles.computeIfAbsent(
+                            Thread.currentThread(), thread -> new HashMap<>()
+                        );
+                        ZipFile zipFile = workerZipFiles.get(source.zip());
+                        if (zipFile == null) {
+                            zipFile = new ZipFile(source.zip());
+                            workerZipFiles.put(source.zip(), zipFile);
+                        }
+                        image = Icons.newImage(zipFile, zipFile.getEntry(source.entryName()), IconCache.WIDTH);
+                    }
+                    
+                    cache.put(key, image);
+                } catch (IOException | RuntimeException ex) {
+                    Logger.getLogger(IconLoader.class.getName()).log(Level.WARNING, "Couldn't decode icon " + key, ex);
+                }
+                // broken icons are only decoded again once their file gets modified
+                cache.putVersion(key, source.timestamp());
+                updateUI(key);
+                observer.notify(OBS_ID, 1);
+            })).get();
+        } catch (InterruptedException ex) {
+            isCancelled = true;
+            return false;
+        } finally {
+            pool.shutdownNow();
+            // workers only check for cancellation between icons, so wait for them to stop reading before closing their zip files
+            try {
+                if (!pool.awaitTermination(1, TimeUnit.MINUTES))
+                    Logger.getLogger(IconLoader.class.getName()).log(Level.WARNING, "Icon decoding workers didn't stop in time");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            zipFiles.values().forEach(workerZipFiles -> workerZipFiles.values().forEach(zipFile -> {
+                try {
+                    zipFile.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(IconLoader.class.getName()).log(Level.WARNING, "Couldn't close " + zipFile.getName(), ex);
+                }
+            }));
+        }
+        
+        long elapsed = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        Logger.getLogger(IconLoader.class.getName()).log(Level.INFO, String.format(
+            "Decoded %d icons in %d ms with %d workers, i.e. %.0f icons/s",
+            sources.size(), elapsed, workerCount, sources.size() * 1000.0 / elapsed
+        ));
+        return true;
     }
 
     @Override
@@ -84,46 +179,20 @@ public class IconLoader implements InitialisedCallable<Void> {
         observer.begin(OBS_ID, machines.size());
         
         // refresh UI with cache content
-        cache.getKeys().forEach(
-            name -> updateUI(name)
-        );
+        IconResolver.Instance.refreshAll();
         observer.notify(OBS_ID, cache.getKeys().size());
         
-        boolean isModified = false;
-        
         // refresh cache if needed
-        final List<String> batch = new ArrayList<>();
-        final int cutoffSize = 1000;
-        Delegate batchUpdateUI = () -> {
-            batch.forEach(id -> updateUI(id));
-            observer.notify(OBS_ID, batch.size());
-            batch.clear();
-        };
-        
+        Map<String, IconSource> sources = new LinkedHashMap<>();
         for (String folder : Configuration.Manager.getFolderPaths(Property.ICON)) {
             Path folderPath = Paths.get(folder);
             if (Files.exists(folderPath) && Files.isDirectory(folderPath)) try (
                 Stream<Path> iconPaths = Files.list(folderPath)
             ) {
                 for (Path iconPath : iconPaths.toArray(Path[]::new)) {
-                    String key = cache.pathToKey(iconPath);
-                    Instant version = cache.getVersion(key);
-                    Instant timestamp = Files.getLastModifiedTime(iconPath).toInstant();
-
-                    if (version == null || !version.equals(timestamp)) {
-                        Image image = Icons.newImage(iconPath, IconCache.WIDTH);
-                        cache.putVersion(key, timestamp);
-                        cache.put(key, image);
-                        // Java 8u66 isn't reliable enough to bear heavy continuous GUI updates through grid bindings without graphical update freezes
-                        // so disable below realtime update and do it by batches
-                        //updateUI(key);
-                        batch.add(key);
-                        if (batch.size() > cutoffSize)
-                            batchUpdateUI.fire();
-
-                        if (!isModified)
-                            isModified = true;
-                    }
+                    sources.put(cache.pathToKey(iconPath), new IconSource(
+                        iconPath, null, null, Files.getLastModifiedTime(iconPath).toInstant()
+                    ));
                     
                     if (Thread.interrupted())
                         return null;
@@ -136,29 +205,13 @@ public class IconLoader implements InitialisedCallable<Void> {
             
             Path zipPath = Paths.get(zip);
             if (Files.exists(zipPath) && !Files.isDirectory(zipPath)) try (
-                ZipFile zipFile = new ZipFile(zip)
+                ZipFilePool.Lease lease = ZipFilePool.Instance.lease(zipPath)
             ) {
-                for (ZipEntry zipEntry : IterableEnumeration.make(zipFile.entries())) {
-                    if (!zipEntry.isDirectory()) {
-                        String key = cache.pathToKey(Paths.get(zipEntry.getName()));
-                        Instant version = cache.getVersion(key);
-                        Instant timestamp = zipEntry.getLastModifiedTime().toInstant();
-
-                        if (version == null || !version.equals(timestamp)) {
-                            Image image = Icons.newImage(zipFile, zipEntry, IconCache.WIDTH);
-                            cache.putVersion(key, timestamp);
-                            cache.put(key, image);
-                            // Java 8u66 isn't reliable enough to bear heavy continuous GUI updates through grid bindings without graphical update freezes
-                            // so disable below realtime update and do it by batches
-                            //updateUI(key);
-                            batch.add(key);
-                            if (batch.size() > cutoffSize)
-                                batchUpdateUI.fire();
-
-                            if (!isModified)
-                                isModified = true;
-                        }
-                    }
+                for (ZipEntry zipEntry : IterableEnumeration.make(lease.getZipFile().entries())) {
+                    if (!zipEntry.isDirectory())
+                        sources.put(cache.pathToKey(Paths.get(zipEntry.getName())), new IconSource(
+                            null, zip, zipEntry.getName(), zipEntry.getLastModifiedTime().toInstant()
+                        ));
                     
                     if (Thread.interrupted())
                         return null;
@@ -166,7 +219,13 @@ public class IconLoader implements InitialisedCallable<Void> {
             }
         }
         
-        batchUpdateUI.fire();
+        List<Map.Entry<String, IconSource>> modifiedSources = sources.entrySet().stream().filter(
+            entry -> !entry.getValue().timestamp().equals(cache.getVersion(entry.getKey()))
+        ).collect(Collectors.toList());
+        
+        boolean isModified = !modifiedSources.isEmpty();
+        if (isModified && !decode(modifiedSources))
+            return null;
         
         if (isModified) {
             cache.save();
@@ -175,17 +234,16 @@ public class IconLoader implements InitialisedCallable<Void> {
         
         // remove useless entries if any
         List<String> keysToRemove = new ArrayList<>();
-        Map<String, ZipFile> zipFiles = new HashMap<>();
+        Map<String, ZipFilePool.Lease> zipFiles = new HashMap<>();
         try {
-            // 1- cache zip files
+            // 1- borrow zip files, which are still open from the first pass
             for (String zip : Configuration.Manager.getFolderPaths(Property.ICON)) {
                 if (!zip.endsWith(ZIP_EXT))
                     zip += ZIP_EXT;
 
                 Path zipPath = Paths.get(zip);
                 if (Files.exists(zipPath) && !Files.isDirectory(zipPath)) try {
-                    ZipFile zipFile = new ZipFile(zip);
-                    zipFiles.put(zip, zipFile);
+                    zipFiles.put(zip, ZipFilePool.Instance.lease(zipPath));
                 } catch (Exception ex) { }
             }
             // 2- loop over icon cache to detect now useless entries
@@ -204,9 +262,9 @@ public class IconLoader implements InitialisedCallable<Void> {
                     if (!zip.endsWith(ZIP_EXT))
                         zip += ZIP_EXT;
 
-                    ZipFile zipFile = zipFiles.get(zip);
-                    if (zipFile != null) {
-                        ZipEntry zipEntry = zipFile.getEntry(key + Icons.EXTENSION);
+                    ZipFilePool.Lease lease = zipFiles.get(zip);
+                    if (lease != null) {
+                        ZipEntry zipEntry = lease.getZipFile().getEntry(key + Icons.EXTENSION);
                         if (zipEntry != null && !zipEntry.isDirectory()) {
                             exists = true;
                             break;
@@ -221,10 +279,8 @@ public class IconLoader implements InitialisedCallable<Void> {
                     return null;
             }
         } finally {
-            // 3- release zip files
-            zipFiles.values().forEach(zipFile -> {
-                try { zipFile.close(); } catch (Exception ex) { }
-            });
+            // 3- give zip files back
+            zipFiles.values().forEach(ZipFilePool.Lease::close);
         }
         if (keysToRemove.size() > 0) {
             // 4- effectively remove useless entries
@@ -0,0 +1,463 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.loader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.babelsoft.negatron.util.StringPool;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Non-validating XML scanner dedicated to MAME -listxml output, used as a faster alternative to SAX.<br />
+ * It works straight on UTF-8 bytes, skips the DTD, only builds strings for the elements it's told to forward
+ * and reuses the same attributes and character buffers from one element to the next.
+ * Names and values are pooled so that repeated ones like source files, statuses or device types are only allocated once.
+ * @author capan
+ */
+public class ListXmlScanner {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final ContentHandler handler;
+    private final Set<String> elements;
+    private final Set<String> textElements;
+    private final StringPool pool = new StringPool();
+    private final AttributesImpl attributes = new AttributesImpl();
+    private final Map<String, List<String[]>> attributeDefaults = new HashMap<>();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private InputStream input;
+    private int position;
+    private int limit;
+    private char[] chars = new char[256];
+    private int length;
+    private boolean isText;
+    
+    /**
+     * @param elements names of the elements to forward to the handler, others are only skipped through
+     * @param textElements names of the forwarded elements whose text content matters
+     */
+    public ListXmlScanner(ContentHandler handler, Set<String> elements, Set<String> textElements) {
+        this.handler = handler;
+        this.elements = elements;
+        this.textElements = textElements;
+    }
+    
+    public void parse(InputStream input) throws IOException, SAXException {
+        this.input = input;
+        position = 0;
+        limit = 0;
+        isText = false;
+        
+        handler.startDocument();
+        int c = read();
+        while (c >= 0) {
+            if (c != '<') {
+                c = readText(c);
+                continue;
+            }
+            
+            c = read();
+            switch (c) {
+                case '?' -> skipPast("?>");
+                case '!' -> skipMarkupDeclaration();
+                case '/' -> endElement();
+                default -> startElement(c);
+            }
+            c = read();
+        }
+        handler.endDocument();
+    }
+    
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = input.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+    
+    private int readRequired() throws IOException, SAXException {
+        int c = read();
+        if (c < 0)
+            throw new SAXException("Unexpected end of MAME output");
+        return c;
+    }
+    
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+    }
+    
+    private int skipWhitespace(int c) throws IOException, SAXException {
+        while (isWhitespace(c))
+            c = readRequired();
+        return c;
+    }
+    
+    /**
+     * Skip up to and including the given ASCII terminator of at most 4 characters.
+     */
+    private void skipPast(String terminator) throws IOException, SAXException {
+        int target = 0;
+        for (int i = 0; i < terminator.length(); ++i)
+            target = target << 8 | terminator.charAt(i);
+        int mask = terminator.length() == 4 ? -1 : (1 << (terminator.length() << 3)) - 1;
+        
+        int window = 0;
+        do
+            window = (window << 8 | readRequired()) & mask;
+        while (window != target);
+    }
+    
+    private void skipMarkupDeclaration() throws IOException, SAXException {
+        int c = readRequired();
+        if (c == '-') {
+            skipPast("-->");
+        } else if (c == '[') {
+            // <![CDATA[...]]>
+            for (int i = 0; i < "CDATA[".length(); ++i)
+                readRequired();
+            length = 0;
+            int window = 0;
+            for (;;) {
+                c = readRequired();
+                window = (window << 8 | c) & 0xFFFFFF;
+                if (window == (']' << 16 | ']' << 8 | '>'))
+                    break;
+                appendUtf8(c);
+            }
+            length -= 2;
+            if (isText && length > 0)
+                handler.characters(chars, 0, length);
+        } else {
+            // <!DOCTYPE ...>, possibly with an internal subset
+            StringBuilder declaration = new StringBuilder();
+            int quote = 0;
+            int depth = 0;
+            for (;;) {
+                if (quote != 0) {
+                    if (c == quote)
+                        quote = 0;
+                } else if (c == '"' || c == '\'')
+                    quote = c;
+                else if (c == '[')
+                    ++depth;
+                else if (c == ']')
+                    --depth;
+                else if (c == '>' && depth == 0)
+                    break;
+                else if (c == '-' && declaration.length() >= 2 && declaration.substring(declaration.length() - 2).equals("<!")) {
+                    // comment
+                    skipPast("-->");
+                    declaration.setLength(declaration.length() - 2);
+                    c = readRequired();
+                    continue;
+                }
+                declaration.append((char) c);
+                c = readRequired();
+            }
+            readAttributeDefaults(declaration);
+        }
+    }
+    
+    /**
+     * MAME omits attributes having their default value, e.g. runnable="yes", so defaults declared by the DTD must be applied
+     * like a SAX parser would do.
+     */
+    private void readAttributeDefaults(CharSequence declaration) {
+        DeclarationTokenizer tokenizer = new DeclarationTokenizer(declaration);
+        for (String token = tokenizer.next(); token != null; token = tokenizer.next()) {
+            if (!token.equals("<!ATTLIST"))
+                continue;
+            
+            String element = tokenizer.next();
+            List<String[]> elementDefaults = attributeDefaults.computeIfAbsent(element, key -> new ArrayList<>());
+            for (String attribute = tokenizer.next(); attribute != null && !attribute.equals(">"); attribute = tokenizer.next()) {
+                tokenizer.next(); // type
+                String value = tokenizer.next();
+                if (value != null && value.equals("#FIXED"))
+                    value = tokenizer.next();
+                if (value != null && !value.startsWith("#"))
+                    elementDefaults.add(new String[] { attribute, pool.intern(value) });
+            }
+        }
+    }
+    
+    private static class DeclarationTokenizer {
+        
+        private final CharSequence declaration;
+        private int index;
+        
+        DeclarationTokenizer(CharSequence declaration) {
+            this.declaration = declaration;
+        }
+        
+        /**
+         * @return the next name, enumeration, unquoted literal or closing bracket, null at the end
+         */
+        String next() {
+            int length = declaration.length();
+            while (index < length && isWhitespace(declaration.charAt(index)))
+                ++index;
+            if (index >= length)
+                return null;
+            
+            char c = declaration.charAt(index);
+            int start = index;
+            if (c == '"' || c == '\'') {
+                int end = index + 1;
+                while (end < length && declaration.charAt(end) != c)
+                    ++end;
+                index = end + 1;
+                return declaration.subSequence(start + 1, Math.min(end, length)).toString();
+            } else if (c == '(') {
+                while (index < length && declaration.charAt(index) != ')')
+                    ++index;
+                ++index;
+            } else if (c == '>') {
+                ++index;
+            } else {
+                while (index < length && !isWhitespace(declaration.charAt(index)) && declaration.charAt(index) != '>')
+                    ++index;
+            }
+            return declaration.subSequence(start, Math.min(index, length)).toString();
+        }
+    }
+    
+    private void ensureCapacity(int extra) {
+        if (length + extra > chars.length) {
+            char[] newChars = new char[Math.max(chars.length << 1, length + extra)];
+            System.arraycopy(chars, 0, newChars, 0, length);
+            chars = newChars;
+        }
+    }
+    
+    private void append(char c) {
+        ensureCapacity(1);
+        chars[length++] = c;
+    }
+    
+    private void appendUtf8(int c) throws IOException, SAXException {
+        if (c < 0x80) {
+            append((char) c);
+            return;
+        }
+        
+        int count;
+        int codePoint;
+        if ((c & 0xE0) == 0xC0) {
+            count = 1;
+            codePoint = c & 0x1F;
+        } else if ((c & 0xF0) == 0xE0) {
+            count = 2;
+            codePoint = c & 0x0F;
+        } else if ((c & 0xF8) == 0xF0) {
+            count = 3;
+            codePoint = c & 0x07;
+        } else {
+            append('\uFFFD');
+            return;
+        }
+        for (int i = 0; i < count; ++i)
+            codePoint = codePoint << 6 | (readRequired() & 0x3F);
+        
+        if (Character.isBmpCodePoint(codePoint))
+            append((char) codePoint);
+        else {
+            append(Character.highSurrogate(codePoint));
+            append(Character.lowSurrogate(codePoint));
+        }
+    }
+    
+    private void appendReference() throws IOException, SAXException {
+        int start = length;
+        int c = readRequired();
+        while (c != ';') {
+            append((char) c);
+            c = readRequired();
+        }
+        int size = length - start;
+        length = start;
+        
+        if (size > 1 && chars[start] == '#') {
+            int codePoint = chars[start + 1] == 'x' ?
+                Integer.parseInt(new String(chars, start + 2, size - 2), 16) :
+                Integer.parseInt(new String(chars, start + 1, size - 1));
+            if (Character.isBmpCodePoint(codePoint))
+                append((char) codePoint);
+            else {
+                append(Character.highSurrogate(codePoint));
+                append(Character.lowSurrogate(codePoint));
+            }
+        } else if (matches(start, size, "amp"))
+            append('&');
+        else if (matches(start, size, "lt"))
+            append('<');
+        else if (matches(start, size, "gt"))
+            append('>');
+        else if (matches(start, size, "quot"))
+            append('"');
+        else if (matches(start, size, "apos"))
+            append('\'');
+        else
+            throw new SAXException("Unknown entity &" + new String(chars, start, size) + ";");
+    }
+    
+    private boolean matches(int start, int size, String name) {
+        if (size != name.length())
+            return false;
+        for (int i = 0; i < size; ++i)
+            if (chars[start + i] != name.charAt(i))
+                return false;
+        return true;
+    }
+    
+    /**
+     * @return the first byte following the name
+     */
+    private int readName(int c) throws IOException, SAXException {
+        length = 0;
+        while (!isWhitespace(c) && c != '>' && c != '/' && c != '=') {
+            appendUtf8(c);
+            c = readRequired();
+        }
+        return c;
+    }
+    
+    private int readText(int c) throws IOException, SAXException {
+        if (!isText) {
+            while (c >= 0 && c != '<')
+                c = read();
+            return c;
+        }
+        
+        length = 0;
+        while (c >= 0 && c != '<') {
+            if (c == '&')
+                appendReference();
+            else if (c == '\r') {
+                // end of line normalisation
+                append('\n');
+                c = read();
+                if (c == '\n')
+                    c = read();
+                continue;
+            } else
+                appendUtf8(c);
+            c = read();
+        }
+        if (length > 0)
+            handler.characters(chars, 0, length);
+        return c;
+    }
+    
+    private String readValue(int quote) throws IOException, SAXException {
+        length = 0;
+        int c = readRequired();
+        while (c != quote) {
+            if (c == '&')
+                appendReference();
+            else if (c == '\r') {
+                // attribute value normalisation
+                append(' ');
+                c = readRequired();
+                if (c == '\n')
+                    c = readRequired();
+                continue;
+            } else if (isWhitespace(c))
+                append(' ');
+            else
+                appendUtf8(c);
+            c = readRequired();
+        }
+        return pool.intern(chars, 0, length);
+    }
+    
+    private void skipValue(int quote) throws IOException, SAXException {
+        while (readRequired() != quote);
+    }
+    
+    private void startElement(int c) throws IOException, SAXException {
+        c = readName(c);
+        String name = pool.intern(chars, 0, length);
+        boolean isForwarded = elements.contains(name);
+        boolean isEmpty = false;
+        attributes.clear();
+        
+        for (;;) {
+            c = skipWhitespace(c);
+            if (c == '>')
+                break;
+            if (c == '/') {
+                isEmpty = true;
+                c = skipWhitespace(readRequired());
+                if (c != '>')
+                    throw new SAXException("Malformed empty element <" + name + "/>");
+                break;
+            }
+            
+            c = readName(c);
+            String attribute = isForwarded ? pool.intern(chars, 0, length) : null;
+            c = skipWhitespace(c);
+            if (c != '=')
+                throw new SAXException("Malformed attribute in <" + name + ">");
+            int quote = skipWhitespace(readRequired());
+            if (quote != '"' && quote != '\'')
+                throw new SAXException("Unquoted attribute value in <" + name + ">");
+            
+            if (isForwarded)
+                attributes.addAttribute("", attribute, attribute, "CDATA", readValue(quote));
+            else
+                skipValue(quote);
+            c = readRequired();
+        }
+        
+        if (isForwarded) {
+            List<String[]> defaults = attributeDefaults.get(name);
+            if (defaults != null)
+                for (String[] attribute : defaults)
+                    if (attributes.getIndex(attribute[0]) < 0)
+                        attributes.addAttribute("", attribute[0], attribute[0], "CDATA", attribute[1]);
+            handler.startElement("", name, name, attributes);
+            if (isEmpty)
+                handler.endElement("", name, name);
+        }
+        isText = isForwarded && !isEmpty && textElements.contains(name);
+    }
+    
+    private void endElement() throws IOException, SAXException {
+        int c = skipWhitespace(readName(readRequired()));
+        if (c != '>')
+            throw new SAXException("Malformed end tag");
+        
+        String name = pool.intern(chars, 0, length);
+        if (elements.contains(name))
+            handler.endElement("", name, name);
+        isText = false;
+    }
+}
@@ -17,17 +17,30 @@
  */
 package net.babelsoft.negatron.io.loader;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javafx.beans.property.ReadOnlyDoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javax.xml.parsers.SAXParserFactory;
 import net.babelsoft.negatron.io.Mame;
@@ -35,10 +48,12 @@ import net.babelsoft.negatron.io.cache.MachineListCache;
 import net.babelsoft.negatron.io.cache.MachineListCache.Data;
 import net.babelsoft.negatron.io.configuration.Configuration;
 import net.babelsoft.negatron.io.loader.MachineListLoader.MachineListData;
+import net.babelsoft.negatron.model.Rom;
 import net.babelsoft.negatron.model.component.SlotOption;
 import net.babelsoft.negatron.model.item.Machine;
 import net.babelsoft.negatron.model.item.SoftwareList;
 import net.babelsoft.negatron.model.statistics.MachineStatistics;
+import net.babelsoft.negatron.util.CountingInputStream;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -50,6 +65,21 @@ import org.xml.sax.XMLReader;
  */
 public class MachineListLoader implements Callable<MachineListData> {
     
+    /**
+     * Rough size of MAME -listxml output, only used to estimate progress when building the cache for the first time
+     */
+    private static final long DEFAULT_SOURCE_SIZE = 256L * 1024 * 1024;
+    /**
+     * First characters of MAME short names, shared out between MAME processes when listing machines in parallel
+     */
+    private static final String NAME_PREFIXES = "abcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int DEFAULT_MAX_SHARD_COUNT = 4;
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    // small enough for the first machines to be previewed right away, chunks then doubling up to CHUNK_SIZE
+    private static final int FIRST_CHUNK_SIZE = 256 * 1024;
+    private static final byte[] CHUNK_FOOTER = "</mame>".getBytes(StandardCharsets.US_ASCII);
+    private static final int PREVIEW_BATCH_SIZE = 500;
+    
     public static class MachineListData {
         private final Data list;
         private final Map<String, Machine> map;
@@ -75,14 +105,31 @@ public class MachineListLoader implements Callable<MachineListData> {
         }
     }
 
-    private final Map<String, SoftwareList> softwareLists;
+    private final Future<Map<String, SoftwareList>> softwareLists;
     private final SimpleDoubleProperty progressProperty;
+    private final ExecutorService executor;
+    private BlockingQueue<List<Machine>> preview;
 
+    /**
+     * @param softwareLists software lists still being loaded, only waited for once machines are built and must be linked to them
+     * @param executor pool on which to parse MAME output and run several MAME processes at once when the cache must be rebuilt
+     */
     public MachineListLoader(
-        Map<String, SoftwareList> softwareLists, SimpleDoubleProperty progressProperty
+        Future<Map<String, SoftwareList>> softwareLists, SimpleDoubleProperty progressProperty, ExecutorService executor
     ) {
         this.softwareLists = softwareLists;
         this.progressProperty = progressProperty;
+        this.executor = executor;
+    }
+
+    /**
+     * @param preview queue receiving batches of runnable machines as soon as they're parsed when the cache must be rebuilt,
+     * so that the machine list can be browsed before its completion.
+     * Those are detached copies only holding the list view fields and a placeholder parent, as the parsers keep linking
+     * and initialising the original machines on their own threads until the whole list is returned.
+     */
+    public void setPreview(BlockingQueue<List<Machine>> preview) {
+        this.preview = preview;
     }
 
     @Override
@@ -107,32 +154,36 @@ public class MachineListLoader implements Callable<MachineListData> {
         // Determine which types of machines should be processed (only runnable machines for MAME v0.186 and before, include devices from MAME v0.186 forward)
         Configuration.Manager.determineExecutionMode(cache.retrieveVersion());
         
-        // Determine total number of machines to process
-        long totalCount;
-        try (
-            InputStream input = Mame.newInputStream("-ll");
-            InputStreamReader stream = new InputStreamReader(input);
-            BufferedReader reader = new BufferedReader(stream);
-        ) {
-            totalCount = reader.lines().count();
-        }
+        // Parse MAME database, progress being estimated from the amount of XML consumed so far
+        long expectedSize = cache.loadSourceSize();
+        if (expectedSize <= 0)
+            expectedSize = DEFAULT_SOURCE_SIZE;
         
-        // Parse MAME database
-        MachineListDataHandler dataHandler = new MachineListDataHandler(softwareLists, totalCount);
-        progressProperty.bind(dataHandler.ProgressProperty());
-
-        try (InputStream dataStream = Mame.newInputStream("-lx")) {
-            SAXParserFactory spf = SAXParserFactory.newInstance();
-            spf.setNamespaceAware(false);
-            XMLReader xmlReader = spf.newSAXParser().getXMLReader();
-
-            xmlReader.setContentHandler(dataHandler);
-            xmlReader.parse(new InputSource(dataStream));
+        long start = System.nanoTime();
+        int shardCount = getShardCount();
+        MachineListData result = null;
+        
+        if (shardCount > 1) try {
+            result = loadShards(cache, shardCount, expectedSize);
+        } catch (InterruptedException ex) {
+            throw ex;
         } catch (Exception ex) {
-            Logger.getLogger(MachineListLoader.class.getName()).log(Level.SEVERE, null, ex);
+            Logger.getLogger(MachineListLoader.class.getName()).log(
+                Level.WARNING, "Couldn't build machine list from parallel MAME processes, fall back to a single one.", ex
+            );
+            progressProperty.set(0.0);
+            shardCount = 1;
         }
-
-        MachineListData result = dataHandler.result();
+        if (result == null)
+            result = loadChunks(cache, expectedSize);
+        
+        Logger.getLogger(MachineListLoader.class.getName()).log(Level.INFO, "Built machine list of {0} items from {1} MAME process(es) in {2} ms", new Object[] {
+            result.getList().size(), shardCount, (System.nanoTime() - start) / 1_000_000
+        });
+        
+        if (Configuration.Manager.isSyncExecutionMode())
+            initialise(result);
+        
         try {
             cache.save(result.getList());
         } catch (Exception ex) {
@@ -142,15 +193,278 @@ public class MachineListLoader implements Callable<MachineListData> {
         }
         return result;
     }
+    
+    /**
+     * MAME's XML generation is single-threaded, so the only way to use more cores is to run several MAME processes,
+     * each of them listing a share of the driver namespace.
+     * That requires MAME to list devices along with machines, i.e. MAME v0.186 and later.
+     */
+    private int getShardCount() {
+        if (!Configuration.Manager.isSyncExecutionMode())
+            return 1;
+        
+        int count = Configuration.Manager.getCacheWorkerCount();
+        if (count <= 0)
+            count = Math.min(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_SHARD_COUNT);
+        return Math.max(1, Math.min(count, NAME_PREFIXES.length()));
+    }
+    
+    /**
+     * Link machines to software lists, the only step of the machine list building which depends on them.
+     */
+    private void initialise(MachineListData machines) throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        Map<String, SoftwareList> softwareListMap = softwareLists.get();
+        long wait = System.nanoTime() - start;
+        
+        machines.getList().forEach(machine -> machine.initialise(softwareListMap));
+        
+        Logger.getLogger(MachineListLoader.class.getName()).log(Level.INFO, "Linked machines to software lists in {0} ms, after waiting {1} ms for them", new Object[] {
+            (System.nanoTime() - start - wait) / 1_000_000, wait / 1_000_000
+        });
+    }
+    
+    private void parse(InputStream input, MachineListDataHandler dataHandler) throws Exception {
+        if (Configuration.Manager.isListXmlScannerEnabled()) {
+            new ListXmlScanner(
+                dataHandler, MachineListDataHandler.ELEMENTS, MachineListDataHandler.TEXT_ELEMENTS
+            ).parse(input);
+            return;
+        }
+        
+        SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware(false);
+        XMLReader xmlReader = spf.newSAXParser().getXMLReader();
+
+        xmlReader.setContentHandler(dataHandler);
+        xmlReader.parse(new InputSource(input));
+    }
+    
+    /**
+     * Pipeline parsing of a single MAME output: the current thread drains the stream into large buffers
+     * cut right after a machine end tag, each buffer being parsed on its own by the pool,
+     * then partial lists are merged back in stream order.
+     */
+    private MachineListData loadChunks(MachineListCache cache, long expectedSize) throws InterruptedException {
+        List<MachineListDataHandler> dataHandlers = new ArrayList<>();
+        List<Future<Void>> futures = new ArrayList<>();
+        // bound the amount of raw XML waiting to be parsed
+        Semaphore pendingChunks = new Semaphore(2 * Math.max(2, Runtime.getRuntime().availableProcessors()));
+        
+        Process process = null;
+        try (CountingInputStream dataStream = new CountingInputStream((process = Mame.newProcess("-lx")).getInputStream())) {
+            byte[] header = null;
+            byte[] endTag = null;
+            byte[] remainder = new byte[0];
+            boolean isEndOfStream = false;
+            int chunkSize = FIRST_CHUNK_SIZE;
+            
+            while (!isEndOfStream) {
+                byte[] buffer = Arrays.copyOf(remainder, remainder.length + chunkSize);
+                int size = remainder.length + dataStream.readNBytes(buffer, remainder.length, chunkSize);
+                chunkSize = Math.min(chunkSize << 1, CHUNK_SIZE);
+                isEndOfStream = size < buffer.length;
+                
+                int begin = 0;
+                if (endTag == null) {
+                    // XML declaration, DTD and root element are provided again to each chunk,
+                    // the DTD being required for attributes MAME omits when they have their default value, e.g. runnable
+                    for (String tag : new String[] { "machine", "game" }) {
+                        int index = indexOf(buffer, size, ("<" + tag + " ").getBytes(StandardCharsets.US_ASCII));
+                        if (index >= 0) {
+                            begin = index;
+                            header = Arrays.copyOf(buffer, index);
+                            endTag = ("</" + tag + ">").getBytes(StandardCharsets.US_ASCII);
+                            break;
+                        }
+                    }
+                    if (endTag == null) {
+                        remainder = Arrays.copyOf(buffer, size);
+                        continue;
+                    }
+                }
+                
+                int end = lastIndexOf(buffer, size, endTag);
+                if (end < begin) {
+                    remainder = Arrays.copyOfRange(buffer, begin, size);
+                    continue;
+                }
+                end += endTag.length;
+                remainder = Arrays.copyOfRange(buffer, end, size);
+                
+                MachineListDataHandler dataHandler = new MachineListDataHandler(progressProperty, expectedSize, true);
+                dataHandler.setPreview(preview);
+                dataHandler.setSource(dataStream::getCount);
+                dataHandlers.add(dataHandler);
+                
+                InputStream chunk = new SequenceInputStream(Collections.enumeration(List.of(
+                    new ByteArrayInputStream(header),
+                    new ByteArrayInputStream(buffer, begin, end - begin),
+                    new ByteArrayInputStream(CHUNK_FOOTER)
+                )));
+                pendingChunks.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        parse(chunk, dataHandler);
+                        return null;
+                    } finally {
+                        pendingChunks.release();
+                    }
+                }));
+            }
+            cache.saveSourceSize(dataStream.getCount());
+        } catch (InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            throw ex;
+        } catch (Exception ex) {
+            Logger.getLogger(MachineListLoader.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            // MAME would otherwise keep listing machines nobody reads anymore
+            if (process != null)
+                process.destroy();
+        }
+        
+        // keep whatever could be parsed
+        List<MachineListDataHandler> parsedHandlers = new ArrayList<>(dataHandlers.size());
+        for (int i = 0; i < futures.size(); ++i) try {
+            futures.get(i).get();
+            parsedHandlers.add(dataHandlers.get(i));
+        } catch (ExecutionException ex) {
+            Logger.getLogger(MachineListLoader.class.getName()).log(Level.SEVERE, null, ex.getCause());
+        } catch (InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            throw ex;
+        }
+        
+        return merge(parsedHandlers);
+    }
+    
+    private static int indexOf(byte[] buffer, int size, byte[] pattern) {
+        for (int i = 0, max = size - pattern.length; i <= max; ++i)
+            if (Arrays.equals(buffer, i, i + pattern.length, pattern, 0, pattern.length))
+                return i;
+        return -1;
+    }
+    
+    private static int lastIndexOf(byte[] buffer, int size, byte[] pattern) {
+        for (int i = size - pattern.length; i >= 0; --i)
+            if (Arrays.equals(buffer, i, i + pattern.length, pattern, 0, pattern.length))
+                return i;
+        return -1;
+    }
+    
+    /**
+     * Spread name prefixes round-robin as some letters hold far more drivers than others.
+     * @return as many lists of name patterns as shards, together matching all driver names
+     */
+    static List<List<String>> splitNamespace(int shardCount) {
+        shardCount = Math.max(1, Math.min(shardCount, NAME_PREFIXES.length()));
+        List<List<String>> patterns = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; ++i)
+            patterns.add(new ArrayList<>());
+        for (int i = 0; i < NAME_PREFIXES.length(); ++i)
+            patterns.get(i % shardCount).add(NAME_PREFIXES.charAt(i) + "*");
+        return patterns;
+    }
+    
+    private MachineListData loadShards(MachineListCache cache, int shardCount, long expectedSize) throws Exception {
+        List<List<String>> patterns = splitNamespace(shardCount);
+        
+        List<CountingInputStream> streams = new CopyOnWriteArrayList<>();
+        List<Process> processes = new CopyOnWriteArrayList<>();
+        List<MachineListDataHandler> dataHandlers = new ArrayList<>(shardCount);
+        List<Future<Void>> futures = new ArrayList<>(shardCount);
+        LongSupplier consumedSize = () -> streams.stream().mapToLong(CountingInputStream::getCount).sum();
+        
+        try {
+            for (List<String> shard : patterns) {
+                MachineListDataHandler dataHandler = new MachineListDataHandler(progressProperty, expectedSize, true);
+                dataHandler.setPreview(preview);
+                dataHandler.setSource(consumedSize);
+                dataHandlers.add(dataHandler);
+                
+                futures.add(executor.submit(() -> {
+                    List<String> arguments = new ArrayList<>(shard);
+                    arguments.add(0, "-lx");
+                    Process process = Mame.newProcess(arguments);
+                    processes.add(process);
+                    
+                    try (CountingInputStream dataStream = new CountingInputStream(process.getInputStream())) {
+                        streams.add(dataStream);
+                        parse(dataStream, dataHandler);
+                    }
+                    if (!dataHandler.isComplete())
+                        throw new IOException("Incomplete MAME output for " + shard);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures)
+                future.get();
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+            processes.forEach(Process::destroy);
+        }
+        cache.saveSourceSize(consumedSize.getAsLong());
+        
+        return merge(dataHandlers);
+    }
+    
+    /**
+     * Merge partial lists: devices referenced by several MAME processes are listed by each of them, keep the first occurrence.
+     */
+    private MachineListData merge(List<MachineListDataHandler> dataHandlers) {
+        Map<String, Machine> machineMap = new HashMap<>();
+        List<Machine> machines = new ArrayList<>();
+        Map<String, List<String>> internalDeviceMap = new HashMap<>();
+        Map<String, List<SlotOption>> slotOptionMap = new HashMap<>();
+        dataHandlers.forEach(dataHandler -> {
+            dataHandler.result().getList().forEach(machine -> {
+                if (machineMap.putIfAbsent(machine.getName(), machine) == null)
+                    machines.add(machine);
+            });
+            dataHandler.internalDeviceMap.forEach(internalDeviceMap::putIfAbsent);
+            dataHandler.slotOptionMap.forEach(
+                (device, slotOptions) -> slotOptionMap.computeIfAbsent(device, key -> new ArrayList<>()).addAll(slotOptions)
+            );
+        });
+        
+        // a clone and its parent may have been listed by different parts, in which case the clone only knows a placeholder
+        Map<String, Machine> placeholders = new HashMap<>();
+        machines.stream().filter(Machine::hasParent).forEach(machine -> {
+            Machine parent = machineMap.get(machine.getParent().getName());
+            if (parent == null)
+                parent = placeholders.computeIfAbsent(machine.getParent().getName(), name -> machine.getParent());
+            machine.setParent(parent);
+        });
+        
+        // statistics depend on parents so only fill the list once they're resolved
+        MachineListData result = new MachineListData();
+        machines.forEach(result::add);
+        if (Configuration.Manager.isSyncExecutionMode())
+            MachineListDataHandler.resolveReferences(result.getMap(), internalDeviceMap, slotOptionMap);
+        return result;
+    }
 
     private static class MachineListDataHandler extends EmulatedItemListDataHandler<Machine> {
+        
+        // elements actually read by this handler, so that faster parsers can skip the others
+        static final Set<String> ELEMENTS = Set.of(
+            "mame", "machine", "game", "description", "year", "manufacturer", "input", "control", "sound", "display", "driver",
+            "biosset", "ramoption", "device_ref", "device", "instance", "extension", "slot", "slotoption", "softwarelist",
+            "rom", "disk"
+        );
+        static final Set<String> TEXT_ELEMENTS = Set.of("description", "year", "manufacturer", "ramoption");
 
-        private final Map<String, SoftwareList> softwareLists;
-        private final SimpleDoubleProperty progressProperty = new SimpleDoubleProperty(0.0);
+        private final SimpleDoubleProperty progressProperty;
 
-        private final long totalCount;
+        private final long expectedSize;
+        private final boolean isShard;
+        private LongSupplier consumedSize;
         private long currentCount;
+        private boolean isComplete;
         private final MachineListData machines;
+        private BlockingQueue<List<Machine>> preview;
+        private List<Machine> previewBatch;
         
         private int biosCount;
         private int ramCount;
@@ -158,30 +472,85 @@ public class MachineListLoader implements Callable<MachineListData> {
         private final Map<String, List<String>> internalDeviceMap;
         private final Map<String, List<SlotOption>> slotOptionMap;
         
-        private Map<String, String> attributes;
+        // attributes of the element being parsed whose children are needed to build a component
+        private String deviceType;
+        private String deviceTag;
+        private String deviceInterface;
+        private boolean isDeviceMandatory;
+        private boolean isDefaultRamOption;
 
-        public MachineListDataHandler(Map<String, SoftwareList> softwareLists, long totalCount) {
+        /**
+         * @param isShard whether the parsed stream only lists a part of the machines,
+         * in which case cross-references are resolved by the caller once all the parts are merged
+         */
+        public MachineListDataHandler(
+            SimpleDoubleProperty progressProperty, long expectedSize, boolean isShard
+        ) {
             super((name, group) -> new Machine(name, group));
             machines = new MachineListData();
             
-            this.softwareLists = softwareLists;
-            this.totalCount = totalCount;
+            this.progressProperty = progressProperty;
+            this.expectedSize = expectedSize;
+            this.isShard = isShard;
             currentCount = 0;
             
             internalDeviceMap = new HashMap<>();
             slotOptionMap = new HashMap<>();
         }
 
-        public ReadOnlyDoubleProperty ProgressProperty() {
-            return progressProperty;
+        public void setSource(LongSupplier consumedSize) {
+            this.consumedSize = consumedSize;
         }
         
-        private void clone(Attributes atts) {
-            attributes = new HashMap<>();
-            for (int i = 0;i < atts.getLength(); ++i)
-                attributes.put(atts.getLocalName(i), atts.getValue(i));
+        public void setPreview(BlockingQueue<List<Machine>> preview) {
+            this.preview = preview;
+            previewBatch = new ArrayList<>(PREVIEW_BATCH_SIZE);
         }
-
+        
+        /**
+         * Never wait on a full queue while parsing, the UI lagging behind: the current batch just keeps growing instead.
+         */
+        private void publishPreview(boolean isLast) {
+            if (preview == null || previewBatch.isEmpty())
+                return;
+            
+            boolean isPublished;
+            if (isLast) try {
+                isPublished = preview.offer(previewBatch, 1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } else
+                isPublished = preview.offer(previewBatch);
+            
+            if (isPublished)
+                previewBatch = new ArrayList<>(PREVIEW_BATCH_SIZE);
+        }
+        
+        public boolean isComplete() {
+            return isComplete;
+        }
+        
+        private static void resolveReferences(
+            Map<String, Machine> machineMap, Map<String, List<String>> internalDeviceMap, Map<String, List<SlotOption>> slotOptionMap
+        ) {
+            internalDeviceMap.forEach((key, devices) -> {
+                Machine machine = machineMap.get(key);
+                devices.stream().map(machineMap::get).filter(Objects::nonNull).forEach(
+                    device -> machine.addInternalDevice(
+                        device.getName(),
+                        device.getDescription()
+                    )
+                );
+            });
+            slotOptionMap.forEach((key, slotOptionList) -> {
+                Machine machine = machineMap.get(key);
+                slotOptionList.forEach(
+                    slotOption -> slotOption.setDevice(machine)
+                );
+            });
+        }
+        
         public MachineListData result() {
             return machines;
         }
@@ -205,9 +574,11 @@ public class MachineListLoader implements Callable<MachineListData> {
                         );
                         currentItem.setRunnable("yes".equals(atts.getValue("runnable")));
                         currentItem.setMechanical("yes".equals(atts.getValue("ismechanical")));
+                        String romOf = atts.getValue("romof");
+                        if (romOf != null && !romOf.equals(atts.getValue("cloneof")))
+                            currentItem.setRomOf(romOf);
                         biosCount = 0;
                         ramCount = 0;
-                        attributes = null;
                     }
                 }
                 case "manufacturer" -> startTextElement();
@@ -258,7 +629,7 @@ public class MachineListLoader implements Callable<MachineListData> {
                     if (++ramCount > 1)
                         startConsumeCurrentItem(Machine::setConfigurable, true);
                     if (Configuration.Manager.isSyncExecutionMode()) {
-                        clone(atts);
+                        isDefaultRamOption = atts.getValue("default") != null;
                         startTextElement();
                     }
                 }
@@ -273,8 +644,12 @@ public class MachineListLoader implements Callable<MachineListData> {
                     }
                 }
                 case "device" -> {
-                    if (Configuration.Manager.isSyncExecutionMode())
-                        clone(atts);
+                    if (Configuration.Manager.isSyncExecutionMode()) {
+                        deviceType = atts.getValue("type");
+                        deviceTag = atts.getValue("tag");
+                        deviceInterface = atts.getValue("interface");
+                        isDeviceMandatory = atts.getValue("mandatory") != null;
+                    }
                 }
                 case "instance" -> {
                     // device > instance
@@ -282,10 +657,10 @@ public class MachineListLoader implements Callable<MachineListData> {
                         startConsumeCurrentItem(
                             Machine::addDevice,
                             atts.getValue("name"),
-                            attributes.get("type"),
-                            attributes.get("tag"),
-                            attributes.get("interface"),
-                            attributes.get("mandatory") != null
+                            deviceType,
+                            deviceTag,
+                            deviceInterface,
+                            isDeviceMandatory
                         );
                     }
                 }
@@ -324,6 +699,17 @@ public class MachineListLoader implements Callable<MachineListData> {
                         slotOptionList.add(option);
                     }
                 }
+                case "rom", "disk" -> {
+                    if (Configuration.Manager.isSyncExecutionMode()) {
+                        String size = atts.getValue("size");
+                        String crc = atts.getValue("crc");
+                        startConsumeCurrentItem(Machine::addRom, new Rom(
+                            atts.getValue("name"), atts.getValue("merge"), atts.getValue("bios"),
+                            size != null ? Long.parseLong(size) : 0, crc != null ? (int) Long.parseLong(crc, 16) : 0,
+                            qName.equals("disk"), "nodump".equals(atts.getValue("status")), "yes".equals(atts.getValue("optional"))
+                        ));
+                    }
+                }
                 case "softwarelist" -> {
                     startConsumeCurrentItem(
                         Machine::setSoftwareEmbedded, false
@@ -348,38 +734,29 @@ public class MachineListLoader implements Callable<MachineListData> {
             
             switch (qName) {
                 case "mame" -> {
-                    if (Configuration.Manager.isSyncExecutionMode()) {
-                        Map<String, Machine> machineMap = machines.getMap();
-                        internalDeviceMap.forEach((key, devices) -> {
-                            Machine machine = machineMap.get(key);
-                            devices.forEach(
-                                device -> machine.addInternalDevice(
-                                    device,
-                                    machineMap.get(device).getDescription()
-                                )
-                            );
-                        });
-                        slotOptionMap.forEach((key, slotOptionList) -> {
-                            Machine machine = machineMap.get(key);
-                            slotOptionList.forEach(
-                                slotOption -> slotOption.setDevice(machine)
-                            );
-                        });
-                    }
+                    if (Configuration.Manager.isSyncExecutionMode() && !isShard)
+                        resolveReferences(machines.getMap(), internalDeviceMap, slotOptionMap);
+                    isComplete = true;
+                    publishPreview(true);
                 }
                 case "machine", "game" -> {
-                    if (Configuration.Manager.isSyncExecutionMode())
-                        startConsumeCurrentItem(Machine::initialise, softwareLists);
+                    if (preview != null && currentItem != null && currentItem.isRunnable()) {
+                        previewBatch.add(currentItem.toPreview()); // parsers keep linking the original afterwards
+                        if (previewBatch.size() >= PREVIEW_BATCH_SIZE)
+                            publishPreview(false);
+                    }
                     endConsumeCurrentItem(MachineListData::add, machines);
                     
+                    // MAME output usually grows from one version to the next, so never report completion before the end
                     ++currentCount;
-                    if (currentCount % 50 == 0)
-                        progressProperty.set((double) currentCount / (double) totalCount);
+                    if (currentCount % 50 == 0 && consumedSize != null) synchronized (progressProperty) {
+                        progressProperty.set(Math.min((double) consumedSize.getAsLong() / (double) expectedSize, 0.99));
+                    }
                 }
                 case "manufacturer" -> endTextElement(Machine::setManufacturer);
                 case "ramoption" -> {
                     if (Configuration.Manager.isSyncExecutionMode())
-                        endTextElement(Machine::addRamOption, attributes.get("default") != null);
+                        endTextElement(Machine::addRamOption, isDefaultRamOption);
                 }
             }
         }
@@ -266,15 +266,10 @@ public class MachineLoader extends Service<List<Control<?>>> {
                         interfaceFormat != null ? interfaceFormat.getNodeValue().split(",") : new String[0]
                     );
                     if (machine.getSoftwareLists() != null) {
-                        machine.getSoftwareLists().stream().flatMap(softwareListFilter -> {
+                        if (machine.getSoftwareLists().stream().anyMatch(softwareListFilter -> {
                             SoftwareList softwareList = softwareLists.get(softwareListFilter.getSoftwareList());
-                            if (softwareList != null)
-                                return softwareList.getSoftwares(device.getInterfaceFormats(), softwareListFilter.getFilter()).stream();
-                            else
-                                return null;
-                        }).findAny().ifPresent(
-                            software -> device.setCompatibleSoftwareLists(true)
-                        );
+                            return softwareList != null && softwareList.hasSoftwares(device.getInterfaceFormats(), softwareListFilter.getFilter());
+                        })) device.setCompatibleSoftwareLists(true);
                     }
                     Dom.getElementsByTagName(deviceElement, "extension").stream().map(
                         extension -> extension.getAttributes().getNamedItem("name").getNodeValue()
@@ -17,18 +17,20 @@
  */
 package net.babelsoft.negatron.io.loader;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import net.babelsoft.negatron.io.Mame;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.babelsoft.negatron.io.configuration.Configuration;
+import net.babelsoft.negatron.io.configuration.Property;
 import net.babelsoft.negatron.io.cache.StatusCache;
 import net.babelsoft.negatron.model.Status;
 import net.babelsoft.negatron.model.item.Machine;
 import net.babelsoft.negatron.model.item.SoftwareList;
+import net.babelsoft.negatron.util.UpdateDispatcher;
 
 /**
  *
@@ -37,13 +39,31 @@ import net.babelsoft.negatron.model.item.SoftwareList;
 public class MachineStatusLoader implements InitialisedCallable<Void> {
     
     private static final String OBS_ID = "machineStatuses";
+    private static final int ROMSET_BATCH_SIZE = 200;
 
     private final StatusCache cache;
+    private final List<String> romsets;
+    private final HashMap<String, Status> statuses;
     private Map<String, Machine> machines;
     private LoadingObserver observer;
 
+    /**
+     * Verify all romsets known by MAME.
+     */
     public MachineStatusLoader(StatusCache cache) {
         this.cache = cache;
+        romsets = null;
+        statuses = new HashMap<>();
+    }
+
+    /**
+     * Only verify the given romsets, the statuses of all others being kept from the previous verification.
+     */
+    public MachineStatusLoader(StatusCache cache, Collection<String> romsets, Map<String, Status> previousStatuses) {
+        this.cache = cache;
+        this.romsets = new ArrayList<>(romsets);
+        statuses = new HashMap<>(previousStatuses);
+        statuses.keySet().removeAll(romsets);
     }
 
     @Override
@@ -52,63 +72,79 @@ public class MachineStatusLoader implements InitialisedCallable<Void> {
         this.observer = observer;
     }
     
-    private void updateUI(List<String> batch, HashMap<String, Status> statuses) {
-        batch.forEach(name -> {
-            Machine machine = machines.get(name);
-            if (machine != null)
-                machine.setStatus(statuses.get(name));
-        });
-        observer.notify(OBS_ID, batch.size());
-        batch.clear();
+    private void updateStatus(String[] lineElements) {
+        String name = lineElements[1];
+        if (
+            lineElements[lineElements.length - 1].equals("good") ||
+            lineElements[lineElements.length - 2].equals("best") && lineElements[lineElements.length - 1].equals("available")
+        )
+            updateStatus(name, Status.GOOD);
+        else
+            updateStatus(name, Status.BAD);
+    }
+    
+    private void updateStatus(String name, Status status) {
+        statuses.put(name, status);
+        // heavy continuous GUI updates from this thread would make the machine tree freeze, so let the dispatcher pace them
+        Machine machine = machines.get(name);
+        if (machine != null)
+            UpdateDispatcher.Instance.post(machine, Machine.STATUS, status);
+        observer.notify(OBS_ID, 1);
     }
     
     @Override
     public Void call() throws Exception {
-        HashMap<String, Status> statuses = new HashMap<>();
-        List<String> batch = new ArrayList<>();
-        final int cutoffSize = 500;
+        List<List<String>> commands = new ArrayList<>();
+        int processCount = StatusVerifier.getProcessCount();
+        // romsets of which files have been added, changed or removed since the previous verification, all if null
+        List<String> names = romsets;
+        observer.begin(OBS_ID, names != null ? names.size() : machines.size());
         
-        observer.begin(OBS_ID, machines.size());
+        // ROM dumps are only listed along with devices, i.e. by MAME v0.186 and later
+        if (Configuration.Manager.isSyncExecutionMode()) {
+            long start = System.nanoTime();
+            RomAuditor auditor = new RomAuditor(machines, Configuration.Manager.getFolderPaths(Property.ROM));
+            Collection<String> auditedNames = names != null ? names : machines.keySet();
+            names = auditor.audit(auditedNames, (name, status) -> {
+                synchronized (statuses) {
+                    updateStatus(name, status);
+                }
+            });
+            Logger.getLogger(MachineStatusLoader.class.getName()).log(Level.INFO, "Audited {0} romsets in {1} ms, {2} left to MAME", new Object[] {
+                auditedNames.size(), (System.nanoTime() - start) / 1_000_000, names.size()
+            });
+        }
+        
+        if (names == null) {
+            if (processCount > 1)
+                commands.addAll(MachineListLoader.splitNamespace(processCount));
+            else
+                commands.add(new ArrayList<>());
+        } else {
+            for (int i = 0; i < names.size(); i += ROMSET_BATCH_SIZE)
+                commands.add(new ArrayList<>(names.subList(i, Math.min(i + ROMSET_BATCH_SIZE, names.size()))));
+        }
+        commands.forEach(command -> command.add(0, "-verifyroms"));
         
-        Process process = Mame.newProcess("-verifyroms");
-        try (
-            InputStream input = process.getInputStream();
-            InputStreamReader stream = new InputStreamReader(input);
-            BufferedReader reader = new BufferedReader(stream);
-        ) {
-            reader.lines().map(
-                line -> line.split("\\s")
-            ).filter(
-                lineElements -> lineElements.length > 2 && lineElements[0].equals("romset")
-            ).forEach(lineElements -> {
-                String name = lineElements[1];
-                //Machine machine = machines.get(name);
-                if (
-                    lineElements[lineElements.length - 1].equals("good") ||
-                    lineElements[lineElements.length - 2].equals("best") && lineElements[lineElements.length - 1].equals("available")
-                ) {
-                    statuses.put(name, Status.GOOD);
-                    // Java 8u66 isn't reliable enough to bear heavy continuous GUI updates through grid bindings without graphical update freeze
-                    // so disable below realtime update and do it by batches
-                    /*if (machine != null)
-                        machine.setStatus(Status.GOOD);*/
-                } else {
-                    statuses.put(name, Status.BAD);
-                    /*if (machine != null)
-                        machine.setStatus(Status.BAD);*/
+        if (!commands.isEmpty()) try {
+            StatusVerifier.verify(commands, processCount, lineElements -> {
+                synchronized (statuses) {
+                    updateStatus(lineElements);
                 }
-                
-                if (!Thread.currentThread().isInterrupted()) {
-                    batch.add(name);
-                    if (batch.size() > cutoffSize)
-                        updateUI(batch, statuses);
-                } else
-                    process.destroy();
             });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
         
-        if (!Thread.interrupted()) {    
-            updateUI(batch, statuses);
+        if (!Thread.interrupted()) {
+            // romsets verified again but no longer reported have lost all their files
+            if (romsets != null) synchronized (statuses) {
+                romsets.stream().filter(name -> !statuses.containsKey(name)).map(machines::get).filter(
+                    machine -> machine != null
+                ).forEach(
+                    machine -> UpdateDispatcher.Instance.post(machine, Machine.STATUS, Status.UNKNOWN)
+                );
+            }
             cache.saveMachines(statuses);
         }
         
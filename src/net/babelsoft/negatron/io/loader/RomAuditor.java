@@ -0,0 +1,219 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.loader;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipFile;
+import net.babelsoft.negatron.model.Rom;
+import net.babelsoft.negatron.model.Status;
+import net.babelsoft.negatron.model.item.Machine;
+
+/**
+ * Audit romsets in-process from the sizes and CRCs held by the central directories of zipped romsets,
+ * without hashing files as MAME does.
+ * Dumps are looked for by size and CRC in the machine's own set, then along its parent and BIOS sets,
+ * and for devices, in the device's own sets as well.
+ * Romsets which can't be audited that way, i.e. with CHDs, 7-zipped or extracted into folders,
+ * or missing dumps only required by some BIOS options, are left to MAME.
+ * @author capan
+ */
+class RomAuditor {
+    
+    private static final int MAX_CHAIN_LENGTH = 8; // guard against parent and BIOS cycles
+    
+    private final Map<String, Machine> machines;
+    private final Map<String, List<Path>> zips = new HashMap<>();
+    private final Set<String> unreadableSets = new HashSet<>();
+    // per set, the size and CRC of each zip entry, empty if the set can't be read
+    private final Map<String, Optional<Set<Long>>> contents = new ConcurrentHashMap<>();
+    
+    RomAuditor(Map<String, Machine> machines, List<String> romPaths) {
+        this.machines = machines;
+        
+        romPaths.stream().map(Paths::get).filter(Files::isDirectory).forEach(folder -> {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    String lowerName = name.toLowerCase();
+                    if (lowerName.endsWith(".zip"))
+                        zips.computeIfAbsent(name.substring(0, name.length() - 4), key -> new ArrayList<>()).add(path);
+                    else if (lowerName.endsWith(".7z"))
+                        unreadableSets.add(name.substring(0, name.length() - 3));
+                    else if (Files.isDirectory(path))
+                        unreadableSets.add(name);
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(RomAuditor.class.getName()).log(Level.WARNING, "Couldn't list romsets in " + folder, ex);
+            }
+        });
+    }
+    
+    private static long key(long size, int crc) {
+        return size << 32 | crc & 0xFFFFFFFFL;
+    }
+    
+    private Optional<Set<Long>> read(String set) {
+        if (unreadableSets.contains(set))
+            return Optional.empty();
+        
+        Set<Long> content = new HashSet<>();
+        for (Path path : zips.getOrDefault(set, List.of())) {
+            // ZipFile only reads the central directory until entries get opened
+            try (ZipFile zip = new ZipFile(path.toFile())) {
+                zip.stream().forEach(entry -> content.add(key(entry.getSize(), (int) entry.getCrc())));
+            } catch (IOException ex) {
+                Logger.getLogger(RomAuditor.class.getName()).log(Level.FINE, "Couldn't read " + path, ex);
+                return Optional.empty();
+            }
+        }
+        return Optional.of(content);
+    }
+    
+    /**
+     * @return the sets searched for the dumps of the given machine, starting with its own
+     */
+    private List<String> getChain(Machine machine) {
+        List<String> chain = new ArrayList<>();
+        chain.add(machine.getName());
+        while (machine != null && chain.size() < MAX_CHAIN_LENGTH) {
+            String next = machine.getRomOf();
+            if (next == null && machine.hasParent())
+                next = machine.getParent().getName();
+            if (next == null || chain.contains(next))
+                break;
+            chain.add(next);
+            machine = machines.get(next);
+        }
+        return chain;
+    }
+    
+    private static class Tally {
+        int found;
+        int missing;
+        int ownCount; // dumps not merged from parent or BIOS sets, nor coming from devices
+        int ownFound;
+        boolean isAmbiguous;
+    }
+    
+    private void audit(List<Rom> roms, List<String> chain, boolean isOwn, Tally tally) {
+        for (Rom rom : roms) {
+            if (rom.isNoDump())
+                continue;
+            if (rom.isDisk()) {
+                tally.isAmbiguous = true;
+                return;
+            }
+            
+            long key = key(rom.getSize(), rom.getCrc());
+            boolean isFound = false;
+            boolean isReadable = true;
+            for (String set : chain) {
+                Optional<Set<Long>> content = contents.computeIfAbsent(set, this::read);
+                if (content.isEmpty())
+                    isReadable = false;
+                else if (content.get().contains(key)) {
+                    isFound = true;
+                    break;
+                }
+            }
+            
+            boolean isOwnDump = isOwn && rom.getMerge() == null;
+            if (isOwnDump)
+                ++tally.ownCount;
+            if (isFound) {
+                ++tally.found;
+                if (isOwnDump)
+                    ++tally.ownFound;
+            } else if (!isReadable || rom.getBios() != null) {
+                tally.isAmbiguous = true;
+                return;
+            } else if (!rom.isOptional())
+                ++tally.missing;
+        }
+    }
+    
+    /**
+     * @return the status of the romset, null if none of its own dumps are found, as MAME doesn't report such romsets
+     * even when their parent or BIOS sets are there, or {@link Status#UNKNOWN} if MAME has to verify it
+     */
+    Status audit(String name) {
+        Machine machine = machines.get(name);
+        if (machine == null)
+            return Status.UNKNOWN;
+        
+        Tally tally = new Tally();
+        List<String> chain = getChain(machine);
+        audit(machine.getRoms(), chain, true, tally);
+        
+        for (String deviceName : machine.getRomDevices()) {
+            Machine device = machines.get(deviceName);
+            if (tally.isAmbiguous || device == null || device == machine)
+                continue;
+            List<String> deviceChain = new ArrayList<>(chain);
+            getChain(device).stream().filter(set -> !deviceChain.contains(set)).forEach(deviceChain::add);
+            audit(device.getRoms(), deviceChain, false, tally);
+        }
+        
+        if (tally.isAmbiguous)
+            return Status.UNKNOWN;
+        else if (tally.ownCount > 0 ? tally.ownFound == 0 : tally.found == 0)
+            return null; // only sets made of merged dumps, e.g. some clones, are found through their parent
+        else
+            return tally.missing == 0 ? Status.GOOD : Status.BAD;
+    }
+    
+    /**
+     * Audit all given romsets in parallel, until the calling thread gets interrupted.
+     * @param onStatus called concurrently with the status of each romset audited in-process
+     * @return the romsets left to MAME
+     */
+    List<String> audit(Collection<String> names, BiConsumer<String, Status> onStatus) {
+        Thread caller = Thread.currentThread();
+        Queue<String> unresolved = new ConcurrentLinkedQueue<>();
+        
+        names.parallelStream().forEach(name -> {
+            if (caller.isInterrupted())
+                return;
+            Status status = audit(name);
+            if (status == Status.UNKNOWN)
+                unresolved.add(name);
+            else if (status != null)
+                onStatus.accept(name, status);
+        });
+        
+        return new ArrayList<>(unresolved);
+    }
+}
@@ -23,6 +23,7 @@ import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import net.babelsoft.negatron.io.cache.SoftwareListCache;
 import net.babelsoft.negatron.model.item.Software;
@@ -40,6 +41,17 @@ import org.xml.sax.XMLReader;
  */
 public class SoftwareListLoader implements Callable<Void> {
     
+    // hundreds of lists are parsed on a few threads, so don't build a parser for each of them
+    private static final ThreadLocal<SAXParser> PARSER = ThreadLocal.withInitial(() -> {
+        try {
+            SAXParserFactory spf = SAXParserFactory.newInstance();
+            spf.setNamespaceAware(false);
+            return spf.newSAXParser();
+        } catch (ParserConfigurationException | SAXException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+    
     private final SoftwareListCache cache;
     private final Path path;
     
@@ -50,17 +62,28 @@ public class SoftwareListLoader implements Callable<Void> {
 
     @Override
     public Void call() {
-        SoftwareListDataHandler dataHandler = new SoftwareListDataHandler(path, cache.getStatistics());
+        long start = System.currentTimeMillis();
+        // counted apart and merged afterwards, so that loaders don't contend on the shared statistics
+        SoftwareStatistics statistics = new SoftwareStatistics();
+        SoftwareListDataHandler dataHandler = new SoftwareListDataHandler(path, statistics);
+        SAXParser parser = null;
         try {
-            SAXParserFactory spf = SAXParserFactory.newInstance();
-            spf.setNamespaceAware(false);
-            XMLReader xmlReader = spf.newSAXParser().getXMLReader();
+            parser = PARSER.get();
+            XMLReader xmlReader = parser.getXMLReader();
 
             xmlReader.setContentHandler(dataHandler);
             xmlReader.parse(new InputSource(path.toString()));
-        } catch (ParserConfigurationException | SAXException | IOException ex) {
+        } catch (IllegalStateException | SAXException | IOException ex) {
             Logger.getLogger(SoftwareListLoader.class.getName()).log(Level.SEVERE, null, ex);
+        } finally {
+            if (parser != null)
+                parser.reset();
         }
+        Logger.getLogger(SoftwareListLoader.class.getName()).log(Level.FINE, "Parsed {0} in {1} ms", new Object[] {
+            path.getFileName(), System.currentTimeMillis() - start
+        });
+        
+        cache.getStatistics().merge(statistics);
         
         SoftwareList result = dataHandler.result();
         try {
@@ -17,17 +17,16 @@
  */
 package net.babelsoft.negatron.io.loader;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import net.babelsoft.negatron.io.Mame;
 import net.babelsoft.negatron.io.cache.StatusCache;
 import net.babelsoft.negatron.model.Status;
 import net.babelsoft.negatron.model.item.Machine;
 import net.babelsoft.negatron.model.item.Software;
 import net.babelsoft.negatron.model.item.SoftwareList;
+import net.babelsoft.negatron.util.UpdateDispatcher;
 
 /**
  *
@@ -51,73 +50,61 @@ public class SoftwareStatusLoader implements InitialisedCallable<Void> {
         this.observer = observer;
     }
     
-    private void updateUI(Map<Software, Status> batch) {
-        batch.entrySet().forEach(
-            entry -> entry.getKey().setStatus(entry.getValue())
-        );
-        observer.notify(OBS_ID, batch.size());
-        batch.clear();
+    private void updateStatus(String[] lineElements, HashMap<String, HashMap<String, Status>> listStatuses) {
+        String[] names = lineElements[1].split(":");
+        
+        // don't load a lazy software list only to update its statuses
+        SoftwareList softwareList = softwareLists.get(names[0]);
+        Software software = softwareList != null && softwareList.isLoaded() ? softwareList.getSoftware(names[1]) : null;
+        HashMap<String, Status> statuses = listStatuses.get(names[0]);
+        if (statuses == null) {
+            statuses = new HashMap<>();
+            listStatuses.put(names[0], statuses);
+        }
+        
+        Status status =
+            lineElements[lineElements.length - 1].equals("good") ||
+            lineElements[lineElements.length - 2].equals("best") && lineElements[lineElements.length - 1].equals("available")
+            ? Status.GOOD : Status.BAD;
+        statuses.put(names[1], status);
+        if (software != null)
+            UpdateDispatcher.Instance.post(software, Software.STATUS, status);
+        else if (softwareList != null)
+            softwareList.setStatus(names[1], status);
+        observer.notify(OBS_ID, 1);
     }
     
     @Override
     public Void call() throws Exception {
         HashMap<String, HashMap<String, Status>> listStatuses = new HashMap<>();
-        Map<Software, Status> batch = new HashMap<>();
-        final int cutoffSize = 500;
         
         observer.begin(
             OBS_ID,
             softwareLists.values().stream().mapToInt(softList -> softList.size()).sum()
         );
         
-        Process process = Mame.newProcess("-verifysoftware");
-        try (
-            InputStream input = process.getInputStream();
-            InputStreamReader stream = new InputStreamReader(input);
-            BufferedReader reader = new BufferedReader(stream);
-        ) {
-            reader.lines().map(
-                line -> line.split("\\s")
-            ).filter(
-                lineElements -> lineElements.length > 2 && lineElements[0].equals("romset")
-            ).forEach(lineElements -> {
-                String[] names = lineElements[1].split(":");
-                
-                Software software = softwareLists.get(names[0]).getSoftware(names[1]);
-                HashMap<String, Status> statuses = listStatuses.get(names[0]);
-                if (statuses == null) {
-                    statuses = new HashMap<>();
-                    listStatuses.put(names[0], statuses);
-                }
-                
-                if (
-                    lineElements[lineElements.length - 1].equals("good") ||
-                    lineElements[lineElements.length - 2].equals("best") && lineElements[lineElements.length - 1].equals("available")
-                ) { 
-                    statuses.put(names[1], Status.GOOD);
-                    if (software != null)
-                        //software.setStatus(Status.GOOD);
-                        batch.put(software, Status.GOOD);
-                } else {
-                    statuses.put(names[1], Status.BAD);
-                    if (software != null)
-                        //software.setStatus(Status.BAD);
-                        batch.put(software, Status.BAD);
+        // -verifysoftlist only takes a single pattern, so run one process per software list name prefix
+        List<List<String>> commands = new ArrayList<>();
+        int processCount = StatusVerifier.getProcessCount();
+        if (processCount > 1)
+            MachineListLoader.splitNamespace(Integer.MAX_VALUE).forEach(
+                patterns -> commands.add(List.of("-verifysoftlist", patterns.get(0)))
+            );
+        else
+            commands.add(List.of("-verifysoftware"));
+        
+        try {
+            StatusVerifier.verify(commands, processCount, lineElements -> {
+                synchronized (listStatuses) {
+                    updateStatus(lineElements, listStatuses);
                 }
-                
-                if (!Thread.currentThread().isInterrupted()) {
-                    if (batch.size() > cutoffSize) {
-                        updateUI(batch);
-                    }
-                } else
-                    process.destroy();
             });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
         }
         
-        if (!Thread.interrupted()) {
-            updateUI(batch);
+        if (!Thread.interrupted())
             cache.saveSoftware(listStatuses);
-        }
         
         observer.end(OBS_ID);
         
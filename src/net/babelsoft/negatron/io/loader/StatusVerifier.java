@@ -0,0 +1,105 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.io.loader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import net.babelsoft.negatron.io.Mame;
+import net.babelsoft.negatron.io.configuration.Configuration;
+
+/**
+ * Run MAME verifications as several processes at once, as each of them only hashes files on a single core.
+ * Status lines of all processes are merged into the same consumer, which must therefore be thread-safe.
+ * @author capan
+ */
+class StatusVerifier {
+    
+    private StatusVerifier() { }
+    
+    /**
+     * Verifying a share of the romsets requires MAME to take several patterns, i.e. MAME v0.186 and later.
+     * @return the number of MAME processes to run in parallel
+     */
+    static int getProcessCount() {
+        if (!Configuration.Manager.isSyncExecutionMode())
+            return 1;
+        
+        int count = Configuration.Manager.getCacheWorkerCount();
+        if (count <= 0)
+            count = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, count);
+    }
+    
+    /**
+     * Run every MAME command line, at most processCount of them at once.
+     * All processes get destroyed as soon as the calling thread gets interrupted or one of them fails.
+     * @param onRomset called with the space separated elements of each line reporting the status of an existing romset
+     */
+    static void verify(List<List<String>> commands, int processCount, Consumer<String[]> onRomset) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(processCount, commands.size())),
+            runnable -> {
+                Thread thread = new Thread(runnable, "status-verifier");
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        List<Process> processes = new CopyOnWriteArrayList<>();
+        List<Future<Void>> futures = new ArrayList<>(commands.size());
+        
+        try {
+            commands.forEach(command -> futures.add(executor.submit(() -> {
+                run(command, processes, onRomset);
+                return null;
+            })));
+            for (Future<Void> future : futures)
+                future.get();
+        } finally {
+            executor.shutdownNow();
+            processes.forEach(Process::destroy);
+        }
+    }
+    
+    private static void run(List<String> command, List<Process> processes, Consumer<String[]> onRomset) throws IOException {
+        if (Thread.currentThread().isInterrupted())
+            return;
+        
+        Process process = Mame.newProcess(new ArrayList<>(command));
+        processes.add(process);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null && !Thread.currentThread().isInterrupted()) {
+                String[] lineElements = line.split("\\s");
+                // names or patterns matching nothing are quoted, e.g. romset "foo*" not found!
+                if (lineElements.length > 2 && lineElements[0].equals("romset") && !lineElements[1].startsWith("\""))
+                    onRomset.accept(lineElements);
+            }
+        } finally {
+            if (Thread.currentThread().isInterrupted())
+                process.destroy();
+        }
+    }
+}
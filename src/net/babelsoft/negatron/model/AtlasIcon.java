@@ -0,0 +1,59 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.model;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * An icon stored as a slot of an icon atlas page.
+ * Views should display it through an ImageView viewport, so that all icons of a page share the same texture.
+ * @author capan
+ */
+public class AtlasIcon {
+    
+    private final Image atlas;
+    private final Rectangle2D viewport;
+    private Image image;
+    
+    public AtlasIcon(Image atlas, Rectangle2D viewport) {
+        this.atlas = atlas;
+        this.viewport = viewport;
+    }
+
+    public Image getAtlas() {
+        return atlas;
+    }
+
+    public Rectangle2D getViewport() {
+        return viewport;
+    }
+    
+    /**
+     * @return a standalone copy of the icon, for views which can't display a viewport
+     */
+    public synchronized Image getImage() {
+        if (image == null)
+            image = new WritableImage(
+                atlas.getPixelReader(),
+                (int) viewport.getMinX(), (int) viewport.getMinY(), (int) viewport.getWidth(), (int) viewport.getHeight()
+            );
+        return image;
+    }
+}
@@ -27,10 +27,18 @@ public class IconDescription {
     
     private final String description;
     private final Image icon;
+    private final AtlasIcon atlasIcon;
 
     public IconDescription(String description, Image icon) {
         this.description = description;
         this.icon = icon;
+        atlasIcon = null;
+    }
+
+    public IconDescription(String description, AtlasIcon atlasIcon) {
+        this.description = description;
+        this.atlasIcon = atlasIcon;
+        icon = null;
     }
 
     public String getDescription() {
@@ -38,6 +46,13 @@ public class IconDescription {
     }
 
     public Image getIcon() {
-        return icon;
+        return atlasIcon != null ? atlasIcon.getImage() : icon;
+    }
+
+    /**
+     * @return the icon as stored in the icon atlas, or null if it's a standalone image
+     */
+    public AtlasIcon getAtlasIcon() {
+        return atlasIcon;
     }
 }
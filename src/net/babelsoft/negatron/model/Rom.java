@@ -0,0 +1,92 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.model;
+
+import java.io.Serializable;
+
+/**
+ * A ROM or disk dump required by a machine, as listed by MAME.
+ * @author capan
+ */
+public class Rom implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    private final String name;
+    private final String merge;
+    private final String bios;
+    private final long size;
+    private final int crc;
+    private final boolean disk;
+    private final boolean noDump;
+    private final boolean optional;
+    
+    public Rom(String name, String merge, String bios, long size, int crc, boolean isDisk, boolean isNoDump, boolean isOptional) {
+        this.name = name;
+        this.merge = merge;
+        this.bios = bios;
+        this.size = size;
+        this.crc = crc;
+        this.disk = isDisk;
+        this.noDump = isNoDump;
+        this.optional = isOptional;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * @return the name of the same dump in the parent set, or null if this dump is unique to its set
+     */
+    public String getMerge() {
+        return merge;
+    }
+    
+    /**
+     * @return the BIOS option this dump is only required by, or null if required by all of them
+     */
+    public String getBios() {
+        return bios;
+    }
+    
+    public long getSize() {
+        return size;
+    }
+    
+    public int getCrc() {
+        return crc;
+    }
+    
+    /**
+     * @return whether this dump is a CHD, only identified by its SHA-1
+     */
+    public boolean isDisk() {
+        return disk;
+    }
+    
+    /**
+     * @return whether no dump is known yet, so that there's nothing to look for
+     */
+    public boolean isNoDump() {
+        return noDump;
+    }
+    
+    public boolean isOptional() {
+        return optional;
+    }
+}
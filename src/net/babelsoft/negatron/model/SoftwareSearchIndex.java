@@ -0,0 +1,378 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import net.babelsoft.negatron.io.cache.CacheDataInput;
+import net.babelsoft.negatron.io.cache.CacheDataOutput;
+import net.babelsoft.negatron.model.item.Software;
+import net.babelsoft.negatron.model.item.SoftwareList;
+
+/**
+ * Inverted index over the softwares of all software lists.<br />
+ * Field values are normalised the way filters do, i.e. lower case without spaces, and each 3-character sequence
+ * found in them points to the softwares containing it, so that substring queries only check the softwares
+ * sharing the rarest sequence of the query instead of every software.
+ * Per-list content is persisted with the software list cache, only decoded on first use, sequences being indexed on first query.
+ * @author capan
+ */
+public class SoftwareSearchIndex {
+    
+    public enum Field {
+        NAME, DESCRIPTION, PUBLISHER, YEAR
+    }
+    
+    private static final int GRAM_SIZE = 3;
+    private static final int[] NO_ENTRY = new int[0];
+    
+    private static class Block {
+        private final String softwareList;
+        private final String[] names;
+        private final String[][] values; // per field then per software
+        
+        private Block(String softwareList, String[] names, String[][] values) {
+            this.softwareList = softwareList;
+            this.names = names;
+            this.values = values;
+        }
+    }
+    
+    private static class Snapshot {
+        private final Block[] blocks;
+        private final int[] owners; // entry id to block index
+        private final int[] offsets; // block index to first entry id
+        private final GramTable grams = new GramTable();
+        
+        private Snapshot(Collection<Block> content) {
+            blocks = content.toArray(Block[]::new);
+            offsets = new int[blocks.length];
+            int size = 0;
+            for (int i = 0; i < blocks.length; ++i) {
+                offsets[i] = size;
+                size += blocks[i].names.length;
+            }
+            owners = new int[size];
+            for (int i = 0; i < blocks.length; ++i)
+                Arrays.fill(owners, offsets[i], offsets[i] + blocks[i].names.length, i);
+            
+            // first count entries per sequence, then fill postings
+            forEachGram(grams::count);
+            grams.allocate();
+            forEachGram(grams::add);
+            grams.cursors = null;
+        }
+        
+        private void forEachGram(GramConsumer consumer) {
+            for (int i = 0, id = 0; i < blocks.length; ++i) {
+                Block block = blocks[i];
+                for (int j = 0; j < block.names.length; ++j, ++id)
+                    for (String[] values : block.values) {
+                        String value = values[j];
+                        for (int k = 0; k + GRAM_SIZE <= value.length(); ++k)
+                            consumer.accept(gram(value, k), id);
+                    }
+            }
+        }
+    }
+    
+    @FunctionalInterface
+    private interface GramConsumer {
+        void accept(long gram, int id);
+    }
+    
+    /**
+     * Open addressing hash table from sequences to their postings, all stored in a single array.
+     */
+    private static class GramTable {
+        private long[] keys = new long[1 << 12];
+        private int[] counts = new int[keys.length];
+        private int[] lastIds = new int[keys.length]; // entries are visited in order, so duplicates can only be the last id
+        private int[] starts;
+        private int[] cursors; // fill position per slot, counts staying untouched as they tell occupied slots apart
+        private int[] ids = NO_ENTRY;
+        private int size;
+        
+        private int slot(long gram) {
+            int mask = keys.length - 1;
+            int slot = Long.hashCode(gram * 0x9E3779B97F4A7C15L) & mask;
+            while (counts[slot] != 0 && keys[slot] != gram)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+        
+        private void count(long gram, int id) {
+            int slot = slot(gram);
+            if (counts[slot] == 0) {
+                keys[slot] = gram;
+                lastIds[slot] = id;
+                counts[slot] = 1;
+                if (++size > keys.length >> 1)
+                    grow();
+            } else if (lastIds[slot] != id) {
+                lastIds[slot] = id;
+                ++counts[slot];
+            }
+        }
+        
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            int[] oldLastIds = lastIds;
+            keys = new long[oldKeys.length << 1];
+            counts = new int[keys.length];
+            lastIds = new int[keys.length];
+            for (int i = 0; i < oldKeys.length; ++i) if (oldCounts[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                lastIds[slot] = oldLastIds[i];
+            }
+        }
+        
+        private void allocate() {
+            starts = new int[keys.length];
+            cursors = new int[keys.length];
+            int total = 0;
+            for (int i = 0; i < keys.length; ++i) {
+                starts[i] = total;
+                total += counts[i];
+                lastIds[i] = -1;
+            }
+            ids = new int[total];
+        }
+        
+        private void add(long gram, int id) {
+            int slot = slot(gram);
+            if (lastIds[slot] != id) {
+                lastIds[slot] = id;
+                ids[starts[slot] + cursors[slot]++] = id;
+            }
+        }
+        
+        /**
+         * @return the slot holding the given sequence or -1, its entries being found in {@link #ids}
+         */
+        private int find(long gram) {
+            int slot = slot(gram);
+            return counts[slot] != 0 ? slot : -1;
+        }
+    }
+    
+    private record Criterion(Field field, String value) { } // a null field stands for any field
+    
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    private volatile CacheDataInput source; // content not decoded yet
+    private volatile Snapshot snapshot;
+    
+    public SoftwareSearchIndex() { }
+    
+    /**
+     * Keep a reader on content written by {@link #write(CacheDataOutput)}, which therefore has to come last in its file.
+     */
+    public SoftwareSearchIndex(CacheDataInput input) {
+        source = input.duplicate(input.position());
+    }
+    
+    private Map<String, Block> getBlocks() {
+        if (source != null) synchronized (this) {
+            CacheDataInput input = source;
+            if (input != null) {
+                read(input);
+                source = null;
+            }
+        }
+        return blocks;
+    }
+    
+    private void read(CacheDataInput input) {
+        Field[] fields = Field.values();
+        for (int i = input.readInt(); i > 0; --i) {
+            String softwareList = input.readString();
+            String[] names = new String[input.readInt()];
+            for (int j = 0; j < names.length; ++j)
+                names[j] = input.readString();
+            String[][] values = new String[fields.length][names.length];
+            for (String[] fieldValues : values)
+                for (int j = 0; j < names.length; ++j)
+                    fieldValues[j] = input.readString();
+            blocks.put(softwareList, new Block(softwareList, names, values));
+        }
+    }
+    
+    public void write(CacheDataOutput output) {
+        Map<String, Block> content = getBlocks();
+        output.writeInt(content.size());
+        content.values().forEach(block -> {
+            output.writeString(block.softwareList);
+            output.writeInt(block.names.length);
+            for (String name : block.names)
+                output.writeString(name);
+            for (String[] fieldValues : block.values)
+                for (String value : fieldValues)
+                    output.writeString(value);
+        });
+    }
+    
+    public static String normalise(String text) {
+        return text != null ? text.replace(" ", "").toLowerCase() : "";
+    }
+    
+    private static long gram(String value, int index) {
+        return (long) value.charAt(index) << 32 | (long) value.charAt(index + 1) << 16 | value.charAt(index + 2);
+    }
+    
+    /**
+     * Index a freshly parsed software list, replacing any previous version of it.
+     */
+    public void add(SoftwareList softwareList) {
+        Collection<Software> softwares = softwareList.getSoftwares();
+        String[] names = new String[softwares.size()];
+        String[][] values = new String[Field.values().length][names.length];
+        int i = 0;
+        for (Software software : softwares) {
+            names[i] = software.getName();
+            values[Field.NAME.ordinal()][i] = normalise(software.getName());
+            values[Field.DESCRIPTION.ordinal()][i] = normalise(software.getDescription());
+            values[Field.PUBLISHER.ordinal()][i] = normalise(software.getCompany());
+            values[Field.YEAR.ordinal()][i] = normalise(software.getYear());
+            ++i;
+        }
+        getBlocks().put(softwareList.getName(), new Block(softwareList.getName(), names, values));
+        snapshot = null;
+    }
+    
+    public void remove(String softwareList) {
+        if (getBlocks().remove(softwareList) != null)
+            snapshot = null;
+    }
+    
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) synchronized (this) {
+            current = snapshot;
+            if (current == null) {
+                current = new Snapshot(getBlocks().values());
+                snapshot = current;
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * Find the softwares whose fields contain the given values, the same way filters do.
+     * @param criteria values are normalised here, empty ones being ignored
+     * @param softwareLists lists to look into, or null for all of them
+     * @return matching software names per software list, or null if there's no valid criterion
+     */
+    public Map<String, Set<String>> search(Map<Field, String> criteria, Collection<String> softwareLists) {
+        List<Criterion> list = new ArrayList<>();
+        criteria.forEach((field, value) -> {
+            String normalised = normalise(value);
+            if (!normalised.isEmpty())
+                list.add(new Criterion(field, normalised));
+        });
+        return list.isEmpty() ? null : search(list, softwareLists);
+    }
+    
+    /**
+     * Find the softwares across all lists for which each word of the given query is found in any of their fields.
+     * @return matching software names per software list, or null if the query is blank
+     */
+    public Map<String, Set<String>> search(String query) {
+        List<Criterion> list = new ArrayList<>();
+        if (query != null) for (String word : query.trim().split("\\s+")) {
+            String normalised = normalise(word);
+            if (!normalised.isEmpty())
+                list.add(new Criterion(null, normalised));
+        }
+        return list.isEmpty() ? null : search(list, null);
+    }
+    
+    private Map<String, Set<String>> search(List<Criterion> criteria, Collection<String> softwareLists) {
+        Snapshot current = getSnapshot();
+        Map<String, Set<String>> result = new LinkedHashMap<>();
+        
+        boolean[] inScope = null;
+        int scopeSize = current.owners.length;
+        if (softwareLists != null) {
+            Set<String> scope = new HashSet<>(softwareLists);
+            inScope = new boolean[current.blocks.length];
+            scopeSize = 0;
+            for (int i = 0; i < current.blocks.length; ++i) if (scope.contains(current.blocks[i].softwareList)) {
+                inScope[i] = true;
+                scopeSize += current.blocks[i].names.length;
+            }
+        }
+        
+        // any software matching the query contains every sequence of every criterion, so only check those sharing the rarest one
+        GramTable grams = current.grams;
+        int candidates = -1, candidateCount = Integer.MAX_VALUE;
+        for (Criterion criterion : criteria) {
+            for (int k = 0; k + GRAM_SIZE <= criterion.value().length(); ++k) {
+                int slot = grams.find(gram(criterion.value(), k));
+                if (slot < 0)
+                    return result;
+                if (grams.counts[slot] < candidateCount) {
+                    candidates = slot;
+                    candidateCount = grams.counts[slot];
+                }
+            }
+        }
+        
+        if (candidates >= 0 && candidateCount < scopeSize) {
+            for (int i = grams.starts[candidates], max = i + candidateCount; i < max; ++i) {
+                int id = grams.ids[i];
+                int owner = current.owners[id];
+                if (inScope == null || inScope[owner])
+                    check(current.blocks[owner], id - current.offsets[owner], criteria, result);
+            }
+        } else for (int i = 0; i < current.blocks.length; ++i) {
+            if (inScope == null || inScope[i]) {
+                Block block = current.blocks[i];
+                for (int j = 0; j < block.names.length; ++j)
+                    check(block, j, criteria, result);
+            }
+        }
+        return result;
+    }
+    
+    private static void check(Block block, int index, List<Criterion> criteria, Map<String, Set<String>> result) {
+        for (Criterion criterion : criteria) {
+            boolean isFound = false;
+            if (criterion.field() != null)
+                isFound = block.values[criterion.field().ordinal()][index].contains(criterion.value());
+            else for (String[] values : block.values) {
+                if (values[index].contains(criterion.value())) {
+                    isFound = true;
+                    break;
+                }
+            }
+            if (!isFound)
+                return;
+        }
+        result.computeIfAbsent(block.softwareList, key -> new HashSet<>()).add(block.names[index]);
+    }
+}
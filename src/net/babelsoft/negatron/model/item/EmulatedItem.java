@@ -20,10 +20,14 @@ package net.babelsoft.negatron.model.item;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.scene.image.Image;
+import net.babelsoft.negatron.io.cache.CacheDataInput;
+import net.babelsoft.negatron.io.cache.CacheDataOutput;
 import net.babelsoft.negatron.io.extras.Icons;
+import net.babelsoft.negatron.model.AtlasIcon;
 import net.babelsoft.negatron.model.IconDescription;
 import net.babelsoft.negatron.model.Status;
 import net.babelsoft.negatron.model.Support;
+import net.babelsoft.negatron.util.UpdateDispatcher;
 
 /**
  *
@@ -32,6 +36,10 @@ import net.babelsoft.negatron.model.Support;
 public abstract class EmulatedItem<T> extends Item {
     private static final long serialVersionUID = 4L;
     
+    // fields updated from background threads through the update dispatcher
+    public static final UpdateDispatcher.Field<EmulatedItem<?>, Status> STATUS = new UpdateDispatcher.Field<>(EmulatedItem::setStatus);
+    public static final UpdateDispatcher.Field<EmulatedItem<?>, AtlasIcon> ICON = new UpdateDispatcher.Field<>(EmulatedItem::setIcon);
+    
     private String group;
     private String year;
     private boolean configurable;
@@ -46,6 +54,40 @@ public abstract class EmulatedItem<T> extends Item {
         setGroup(group);
     }
     
+    /**
+     * Copy the list view fields of the given item, parent excluded.
+     */
+    protected EmulatedItem(EmulatedItem<T> item) {
+        super(item);
+        group = item.group;
+        year = item.year;
+        configurable = item.configurable;
+        shortcut = item.shortcut;
+        support = item.support;
+    }
+    
+    /**
+     * Parent isn't part of the binary format as it's resolved by the cache codec once all items are decoded.
+     */
+    protected EmulatedItem(CacheDataInput input) {
+        super(input);
+        group = input.readString();
+        year = input.readString();
+        configurable = input.readBoolean();
+        shortcut = input.readString();
+        support = input.readEnum(Support.values());
+    }
+    
+    @Override
+    public void write(CacheDataOutput output) {
+        super.write(output);
+        output.writeString(group);
+        output.writeString(year);
+        output.writeBoolean(configurable);
+        output.writeString(shortcut);
+        output.writeEnum(support);
+    }
+    
     @Override
     public void setDescription(final String description) {
         super.setDescription(description);
@@ -136,6 +178,13 @@ public abstract class EmulatedItem<T> extends Item {
         setIconDescription(new IconDescription(getDescription(), icon));
     }
     
+    public void setIcon(AtlasIcon icon) {
+        if (icon != null)
+            setIconDescription(new IconDescription(getDescription(), icon));
+        else
+            setIcon((Image) null);
+    }
+    
     public abstract String getCompany();
 
     public void setParent(T parent) {
@@ -18,6 +18,8 @@
 package net.babelsoft.negatron.model.item;
 
 import java.io.Serializable;
+import net.babelsoft.negatron.io.cache.CacheDataInput;
+import net.babelsoft.negatron.io.cache.CacheDataOutput;
 
 /**
  *
@@ -38,6 +40,21 @@ public abstract class Item implements Serializable {
         this.description = description;
     }
     
+    protected Item(Item item) {
+        name = item.name;
+        description = item.description;
+    }
+    
+    protected Item(CacheDataInput input) {
+        name = input.readString();
+        description = input.readString();
+    }
+    
+    public void write(CacheDataOutput output) {
+        output.writeString(name);
+        output.writeString(description);
+    }
+    
     public String getName() {
         return name;
     }
@@ -24,11 +24,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import javafx.util.Pair;
+import net.babelsoft.negatron.io.cache.CacheDataInput;
+import net.babelsoft.negatron.io.cache.CacheDataOutput;
 import net.babelsoft.negatron.io.configuration.Configuration;
 import net.babelsoft.negatron.model.ControllerType;
 import net.babelsoft.negatron.model.Describable;
 import net.babelsoft.negatron.model.DisplayType;
 import net.babelsoft.negatron.model.ParametrisedElement;
+import net.babelsoft.negatron.model.Rom;
 import net.babelsoft.negatron.model.ScreenOrientation;
 import net.babelsoft.negatron.model.SoftwareListFilter;
 import net.babelsoft.negatron.model.SoundType;
@@ -50,7 +53,7 @@ import net.babelsoft.negatron.model.component.SlotOption;
  * @author capan
  */
 public class Machine extends EmulatedItem<Machine> implements Describable, ParametrisedElement {
-    private static final long serialVersionUID = 11L;
+    private static final long serialVersionUID = 12L;
 
     private boolean runnable;
     private boolean mechanical;
@@ -60,6 +63,7 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     private boolean softwareEmbedded;
     private int maxNumberPlayers;
     private String manufacturer;
+    private String romOf; // BIOS set the ROMs are shared with, only when it isn't the parent
     private DisplayType displayType;
     private ScreenOrientation screenOrientation;
     private SoundType soundType;
@@ -75,6 +79,14 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     private List<Device> devices;
     private List<Slot> slots;
     private List<Pair<String, String>> defaultSlotOptions; // slot name, default slot option name
+    private List<Rom> roms;
+    // configuration detail still to be decoded from the machine cache
+    private transient volatile CacheDataInput detail;
+    private transient int detailOffset;
+    private transient Map<String, Machine> detailMachines;
+    // dumps still to be decoded from the machine cache, kept apart from the configuration detail as only ROM audits need them
+    private transient CacheDataInput romDetail;
+    private transient int romOffset;
 
     public Machine(final String name, final String sourceFile) {
         super(name, sourceFileToGroup(sourceFile));
@@ -90,6 +102,63 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
         controllerTypes = EnumSet.noneOf(ControllerType.class);
     }
     
+    /**
+     * Decode the list view fields of a machine written by {@link #write(CacheDataOutput)}.
+     * Parent is resolved afterwards by the cache codec.
+     */
+    public Machine(CacheDataInput input) {
+        super(input);
+        int flags = input.readByte();
+        runnable = (flags & 0x01) != 0;
+        mechanical = (flags & 0x02) != 0;
+        coinSlot = (flags & 0x04) != 0;
+        serviceMode = (flags & 0x08) != 0;
+        tilt = (flags & 0x10) != 0;
+        softwareEmbedded = (flags & 0x20) != 0;
+        maxNumberPlayers = input.readInt();
+        manufacturer = input.readString();
+        romOf = input.readString();
+        displayType = input.readEnum(DisplayType.values());
+        screenOrientation = input.readEnum(ScreenOrientation.values());
+        soundType = input.readEnum(SoundType.values());
+        controllerTypes = EnumSet.noneOf(ControllerType.class);
+        int controllerMask = input.readInt();
+        for (ControllerType type : ControllerType.values())
+            if ((controllerMask & (1 << type.ordinal())) != 0)
+                controllerTypes.add(type);
+    }
+    
+    private Machine(Machine machine) {
+        super(machine);
+        runnable = machine.runnable;
+        mechanical = machine.mechanical;
+        coinSlot = machine.coinSlot;
+        serviceMode = machine.serviceMode;
+        tilt = machine.tilt;
+        softwareEmbedded = machine.softwareEmbedded;
+        maxNumberPlayers = machine.maxNumberPlayers;
+        manufacturer = machine.manufacturer;
+        romOf = machine.romOf;
+        displayType = machine.displayType;
+        screenOrientation = machine.screenOrientation;
+        soundType = machine.soundType;
+        controllerTypes = EnumSet.copyOf(machine.controllerTypes);
+    }
+    
+    /**
+     * @return a detached copy of the list view fields of this machine, its parent being a placeholder only named after it,
+     * so that the machine tree can display it while the machine list building goes on with this machine on another thread
+     */
+    public Machine toPreview() {
+        Machine preview = new Machine(this);
+        if (hasParent()) {
+            Machine parent = new Machine(getParent().getName(), "");
+            parent.setDescription(getParent().getName());
+            preview.setParent(parent);
+        }
+        return preview;
+    }
+    
     protected Machine(final String name) {
         super(name, null);
         setDescription(name);
@@ -105,6 +174,219 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
             return sourceFile;
     }
     
+    @Override
+    public void write(CacheDataOutput output) {
+        super.write(output);
+        output.writeByte(
+            (runnable ? 0x01 : 0) | (mechanical ? 0x02 : 0) | (coinSlot ? 0x04 : 0) |
+            (serviceMode ? 0x08 : 0) | (tilt ? 0x10 : 0) | (softwareEmbedded ? 0x20 : 0)
+        );
+        output.writeInt(maxNumberPlayers);
+        output.writeString(manufacturer);
+        output.writeString(romOf);
+        output.writeEnum(displayType);
+        output.writeEnum(screenOrientation);
+        output.writeEnum(soundType);
+        int controllerMask = 0;
+        for (ControllerType type : controllerTypes)
+            controllerMask |= 1 << type.ordinal();
+        output.writeInt(controllerMask);
+    }
+    
+    /**
+     * Write the configuration detail of the machine, i.e. everything only needed once the machine gets configured.
+     */
+    public void writeDetail(CacheDataOutput output) {
+        decodeDetail();
+        output.writeStringMap(internalDevices);
+        
+        if (softwareLists != null) {
+            output.writeInt(softwareLists.size() + 1);
+            softwareLists.forEach(softwareList -> {
+                output.writeString(softwareList.getSoftwareList());
+                output.writeString(softwareList.getFilter());
+            });
+        } else
+            output.writeInt(0);
+        
+        if (bios != null) {
+            List<BiosSet> options = bios.getOptions();
+            output.writeInt(options.size());
+            output.writeInt(options.indexOf(bios.getDefaultValue()));
+            options.forEach(option -> {
+                output.writeString(option.getName());
+                output.writeString(option.getDescription());
+            });
+        } else
+            output.writeInt(0);
+        
+        if (ram != null) {
+            List<RamOption> options = ram.getOptions();
+            output.writeInt(options.size());
+            output.writeInt(options.indexOf(ram.getDefaultValue()));
+            options.stream().skip(1).forEach(option -> output.writeString(option.getName()));
+        } else
+            output.writeInt(0);
+        
+        if (devices != null) {
+            output.writeInt(devices.size() + 1);
+            devices.forEach(device -> {
+                output.writeString(device.getName());
+                output.writeString(device.getType());
+                output.writeString(device.getTag());
+                output.writeBoolean(device.isMandatory());
+                output.writeStrings(device.getInterfaceFormats());
+                output.writeStrings(device.getExtensions().stream().map(
+                    extension -> extension.substring(2) // strip "*."
+                ).toList());
+                output.writeBoolean(device.hasCompatibleSoftwareLists());
+            });
+        } else
+            output.writeInt(0);
+        
+        if (slots != null) {
+            output.writeInt(slots.size() + 1);
+            slots.forEach(slot -> {
+                List<SlotOption> options = slot.getOptions();
+                output.writeString(slot.getName());
+                output.writeString(slot.getBios());
+                output.writeInt(options.size());
+                output.writeInt(options.indexOf(slot.getDefaultValue()));
+                options.stream().skip(1).forEach(option -> {
+                    output.writeString(option.getName());
+                    output.writeString(option.getDevice() != null ? option.getDevice().getName() : null);
+                });
+            });
+        } else
+            output.writeInt(0);
+        
+        if (defaultSlotOptions != null) {
+            output.writeInt(defaultSlotOptions.size() + 1);
+            defaultSlotOptions.forEach(pair -> {
+                output.writeString(pair.getKey());
+                output.writeString(pair.getValue());
+            });
+        } else
+            output.writeInt(0);
+    }
+    
+    private void readDetail(CacheDataInput input, Map<String, Machine> machines) {
+        internalDevices = input.readStringMap();
+        
+        int count = input.readInt();
+        if (count > 0) {
+            softwareLists = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; ++i)
+                softwareLists.add(new SoftwareListFilter(input.readString(), input.readString()));
+        }
+        
+        count = input.readInt();
+        if (count > 0) {
+            int defaultIndex = input.readInt();
+            for (int i = 0; i < count; ++i)
+                addBiosSet(input.readString(), input.readString(), i == defaultIndex);
+        }
+        
+        // index 0 holds the implicit default option, re-created by addOption()
+        count = input.readInt();
+        if (count > 0) {
+            int defaultIndex = input.readInt();
+            for (int i = 1; i < count; ++i)
+                addRamOption(input.readString(), i == defaultIndex);
+        }
+        
+        count = input.readInt();
+        if (count > 0) {
+            devices = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; ++i) {
+                Device device = new Device(input.readString(), input.readString(), input.readString(), input.readBoolean());
+                device.setInterfaceFormats(input.readStrings().toArray(String[]::new));
+                input.readStrings().forEach(device::addExtension);
+                device.setCompatibleSoftwareLists(input.readBoolean());
+                devices.add(device);
+            }
+        }
+        
+        count = input.readInt();
+        if (count > 0) {
+            slots = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; ++i) {
+                addSlot(input.readString());
+                slots.get(i - 1).setBios(input.readString());
+                int optionCount = input.readInt();
+                int defaultIndex = input.readInt();
+                for (int j = 1; j < optionCount; ++j) {
+                    SlotOption option = addSlotOptionToLastSlot(input.readString(), j == defaultIndex);
+                    Machine device = machines.get(input.readString());
+                    if (device != null)
+                        option.setDevice(device);
+                }
+            }
+        }
+        
+        count = input.readInt();
+        if (count > 0) {
+            defaultSlotOptions = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; ++i)
+                defaultSlotOptions.add(new Pair<>(input.readString(), input.readString()));
+        }
+    }
+    
+    /**
+     * Write the dumps required by the machine and the names of the devices it embeds,
+     * i.e. everything needed to audit its romset.
+     */
+    public void writeRoms(CacheDataOutput output) {
+        List<Rom> dumps = getRoms();
+        output.writeInt(dumps.size());
+        dumps.forEach(rom -> {
+            output.writeString(rom.getName());
+            output.writeString(rom.getMerge());
+            output.writeString(rom.getBios());
+            output.writeLong(rom.getSize());
+            output.writeInt(rom.getCrc());
+            output.writeByte((rom.isDisk() ? 0x01 : 0) | (rom.isNoDump() ? 0x02 : 0) | (rom.isOptional() ? 0x04 : 0));
+        });
+        output.writeStrings(getRomDevices());
+    }
+    
+    private static List<Rom> readRoms(CacheDataInput input) {
+        int count = input.readInt();
+        List<Rom> dumps = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String name = input.readString();
+            String merge = input.readString();
+            String bios = input.readString();
+            long size = input.readLong();
+            int crc = input.readInt();
+            int flags = input.readByte();
+            dumps.add(new Rom(name, merge, bios, size, crc, (flags & 0x01) != 0, (flags & 0x02) != 0, (flags & 0x04) != 0));
+        }
+        return dumps;
+    }
+    
+    /**
+     * Attach the configuration detail and the dumps of the machine without decoding them yet.
+     * @param machines used to resolve the devices of slot options once decoded
+     */
+    public void setDetail(CacheDataInput input, int offset, int romOffset, Map<String, Machine> machines) {
+        detailMachines = machines;
+        detailOffset = offset;
+        this.romOffset = romOffset;
+        romDetail = input;
+        detail = input;
+    }
+    
+    private void decodeDetail() {
+        if (detail != null) synchronized (this) {
+            if (detail != null) {
+                readDetail(detail.duplicate(detailOffset), detailMachines);
+                detailMachines = null;
+                detail = null;
+            }
+        }
+    }
+    
     public boolean isFolder() {
         return getGroup() == null;
     }
@@ -117,6 +399,17 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
         return manufacturer;
     }
     
+    public void setRomOf(String romOf) {
+        this.romOf = romOf;
+    }
+    
+    /**
+     * @return the name of the BIOS set this machine's ROMs are merged with, or null when none besides its parent
+     */
+    public String getRomOf() {
+        return romOf;
+    }
+    
     public void setRunnable(boolean isRunnable) {
         this.runnable = isRunnable;
     }
@@ -256,16 +549,50 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     }
     
     public void addInternalDevice(String name, String description) {
+        decodeDetail();
         if (internalDevices == null)
             internalDevices = new HashMap<>();
         internalDevices.put(name, description);
     }
     
+    public void addRom(Rom rom) {
+        if (roms == null)
+            roms = new ArrayList<>();
+        roms.add(rom);
+    }
+    
+    /**
+     * Dumps of cached machines are decoded on each call rather than kept in memory, as they're seldom needed.
+     * @return the ROMs and disks required by this machine, excluding those of its devices
+     */
+    public List<Rom> getRoms() {
+        CacheDataInput input = romDetail;
+        if (input != null)
+            return readRoms(input.duplicate(romOffset));
+        return roms != null ? roms : List.of();
+    }
+    
+    /**
+     * @return the names of the devices embedded in this machine, of which dumps are audited along the machine's
+     */
+    public List<String> getRomDevices() {
+        CacheDataInput input = romDetail;
+        if (input != null) {
+            input = input.duplicate(romOffset);
+            readRoms(input);
+            return input.readStrings();
+        }
+        Map<String, String> devices = getInternalDevices();
+        return devices != null ? devices.keySet().stream().sorted().toList() : List.of();
+    }
+    
     public Map<String, String> getInternalDevices() {
+        decodeDetail();
         return internalDevices;
     }
     
     public void processInternalDevices() {
+        decodeDetail();
         internalDeviceComparator.compare(internalDevices);
     }
     
@@ -274,12 +601,14 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     }
     
     public void addSoftwareList(String softwareList, String filter) {
+        decodeDetail();
         if (softwareLists == null)
             softwareLists = new ArrayList<>();
         softwareLists.add(new SoftwareListFilter(softwareList, filter));
     }
     
     public List<SoftwareListFilter> getSoftwareLists() {
+        decodeDetail();
         if (getSlots() == null)
             return softwareLists;
         
@@ -306,6 +635,7 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     }
     
     public Merger reset(String origin) {
+        decodeDetail();
         if (merger == null) {
             merger = new Merger(this);
             internalDeviceComparator = new InternalDeviceComparator();
@@ -320,6 +650,7 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     }
     
     public void setParameters(MachineElementList parameters) {
+        decodeDetail();
         this.parameters = parameters;
         
         if (Configuration.Manager.isSyncExecutionMode()) {
@@ -383,6 +714,7 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     // MAME v0.186+
     
     public Bios getBios() {
+        decodeDetail();
         return bios;
     }
     
@@ -394,6 +726,7 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     }
     
     public Ram getRam() {
+        decodeDetail();
         return ram;
     }
     
@@ -405,6 +738,7 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     }
     
     public List<Device> getDevices() {
+        decodeDetail();
         return devices;
     }
     
@@ -423,6 +757,7 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     }
     
     public List<Slot> getSlots() {
+        decodeDetail();
         return slots;
     }
     
@@ -440,10 +775,12 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
     }
 
     public List<Pair<String, String>> getDefaultSlotOptions() {
+        decodeDetail();
         return defaultSlotOptions;
     }
     
     public void initialise(Map<String, SoftwareList> softwareListMap) {
+        decodeDetail();
         if (slots != null) {
             slots.removeIf(slot -> slot.size() == 0);
             if (!slots.isEmpty()) {
@@ -458,15 +795,11 @@ public class Machine extends EmulatedItem<Machine> implements Describable, Param
         
         if (devices != null && softwareLists != null) {
             devices.stream().forEach(device -> {
-                softwareLists.stream().flatMap(softwareListFilter -> {
+                // summaries are enough, lazy software lists don't need to be loaded here
+                if (softwareLists.stream().anyMatch(softwareListFilter -> {
                     SoftwareList softwareList = softwareListMap.get(softwareListFilter.getSoftwareList());
-                    if (softwareList != null)
-                        return softwareList.getSoftwares(device.getInterfaceFormats(), softwareListFilter.getFilter()).stream();
-                    else
-                        return null;
-                }).findAny().ifPresent(
-                    software -> device.setCompatibleSoftwareLists(true)
-                );
+                    return softwareList != null && softwareList.hasSoftwares(device.getInterfaceFormats(), softwareListFilter.getFilter());
+                })) device.setCompatibleSoftwareLists(true);
             });
         }
     }
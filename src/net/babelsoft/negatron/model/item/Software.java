@@ -19,8 +19,11 @@ package net.babelsoft.negatron.model.item;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import net.babelsoft.negatron.io.cache.CacheDataInput;
+import net.babelsoft.negatron.io.cache.CacheDataOutput;
 import net.babelsoft.negatron.model.Support;
 
 /**
@@ -80,6 +83,51 @@ public class Software extends EmulatedItem<Software> {
         this(name, softwareList, Support.NOT_AVAILABLE);
     }
     
+    /**
+     * Decode a software written by {@link #write(CacheDataOutput)}.
+     * Parent is resolved afterwards by the software list.
+     */
+    public Software(CacheDataInput input) {
+        super(input);
+        
+        int count = input.readInt();
+        if (count > 0) {
+            parts = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; ++i)
+                parts.add(new SoftwarePart(input));
+        }
+        
+        List<String> compatibilityList = input.readStrings();
+        if (compatibilityList != null)
+            compatibility = compatibilityList.toArray(String[]::new);
+        
+        if (input.readBoolean())
+            requirement = new Requirement(input.readString(), input.readString());
+        
+        publisher = input.readString();
+    }
+    
+    @Override
+    public void write(CacheDataOutput output) {
+        super.write(output);
+        
+        if (parts != null) {
+            output.writeInt(parts.size() + 1);
+            parts.forEach(part -> part.write(output));
+        } else
+            output.writeInt(0);
+        
+        output.writeStrings(compatibility != null ? Arrays.asList(compatibility) : null);
+        
+        output.writeBoolean(requirement != null);
+        if (requirement != null) {
+            output.writeString(requirement.getSoftwareList());
+            output.writeString(requirement.getSoftware());
+        }
+        
+        output.writeString(publisher);
+    }
+    
     public void setPublisher(String publisher) {
         this.publisher = publisher;
     }
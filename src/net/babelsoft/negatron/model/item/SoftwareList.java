@@ -17,31 +17,359 @@
  */
 package net.babelsoft.negatron.model.item;
 
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import net.babelsoft.negatron.io.cache.CacheDataInput;
+import net.babelsoft.negatron.io.cache.CacheDataOutput;
+import net.babelsoft.negatron.model.Status;
 
 /**
- *
+ * A software list is either complete or lazy: a lazy list only keeps a summary in memory
+ * until one of its softwares is actually needed, its content being then requested from its source.
+ * Lazy lists can be unloaded again later on.
  * @author capan
  */
 public class SoftwareList extends Item {
-    private static final long serialVersionUID = 5L;
+    private static final long serialVersionUID = 6L;
+    
+    /**
+     * Where the softwares of a lazy list come from.
+     */
+    public interface Source {
+        
+        /**
+         * @return a complete list whose content is taken over by the given lazy list
+         */
+        SoftwareList load(SoftwareList softwareList);
+        
+        /**
+         * Called once the given list has been loaded, outside of its lock so that other lists can be unloaded meanwhile.
+         */
+        void onLoaded(SoftwareList softwareList);
+    }
     
-    private final Map<String, Software> softwareMap = new HashMap<>();
-    private final Map<String, List<Software>> interfaceSoftwareMap = new HashMap<>();
-    private final Map<String, List<String>> softwareInterfaceMap = new HashMap<>();
+    private static class Content implements Serializable {
+        private static final long serialVersionUID = 1L;
+        
+        private final Map<String, Software> softwareMap = new HashMap<>();
+        private final Map<String, List<Software>> interfaceSoftwareMap = new HashMap<>();
+        private final Map<String, List<String>> softwareInterfaceMap = new HashMap<>();
+        // built on first query, dropped as soon as a software gets added
+        private transient volatile Map<String, Index> indexes;
+        
+        private Index getIndex(String interfaceFormat) {
+            Map<String, Index> current = indexes;
+            if (current == null) synchronized (this) {
+                current = indexes;
+                if (current == null) {
+                    Map<String, String> tokens = new HashMap<>();
+                    current = new HashMap<>(interfaceSoftwareMap.size() * 4 / 3 + 1);
+                    for (Map.Entry<String, List<Software>> entry : interfaceSoftwareMap.entrySet())
+                        current.put(entry.getKey(), new Index(entry.getValue(), tokens));
+                    indexes = current;
+                }
+            }
+            return current.get(interfaceFormat);
+        }
+    }
+    
+    /**
+     * Softwares of a given interface along with, for each compatibility token, the set of softwares claiming it,
+     * so that filtering a list boils down to a couple of bitset operations whose results are kept for later queries.
+     */
+    private static class Index {
+        private final List<Software> softwares;
+        private final BitSet unrestricted = new BitSet(); // softwares without any compatibility
+        private final Map<String, BitSet> compatibilities = new HashMap<>();
+        private final Map<String, List<Software>> views = new ConcurrentHashMap<>();
+        
+        Index(List<Software> softwares, Map<String, String> tokens) {
+            this.softwares = Collections.unmodifiableList(softwares);
+            for (int i = 0; i < softwares.size(); ++i) {
+                String[] compatibility = softwares.get(i).getCompatibility();
+                if (compatibility == null)
+                    unrestricted.set(i);
+                else for (int j = 0; j < compatibility.length; ++j) {
+                    // share token instances between softwares of the same list
+                    String token = tokens.putIfAbsent(compatibility[j], compatibility[j]);
+                    if (token != null)
+                        compatibility[j] = token;
+                    compatibilities.computeIfAbsent(compatibility[j], key -> new BitSet()).set(i);
+                }
+            }
+        }
+        
+        List<Software> get(String filter) {
+            if (filter == null)
+                return softwares;
+            return views.computeIfAbsent(filter, key -> {
+                BitSet selection;
+                if (key.charAt(0) == '!') {
+                    selection = new BitSet(softwares.size());
+                    selection.set(0, softwares.size());
+                    BitSet unwanted = compatibilities.get(key.substring(1));
+                    if (unwanted != null)
+                        selection.andNot(unwanted);
+                } else {
+                    selection = (BitSet) unrestricted.clone();
+                    BitSet expected = compatibilities.get(key);
+                    if (expected != null)
+                        selection.or(expected);
+                }
+                
+                if (selection.cardinality() == softwares.size())
+                    return softwares;
+                else
+                    return selection.stream().mapToObj(softwares::get).collect(Collectors.toUnmodifiableList());
+            });
+        }
+    }
+    
+    private volatile Content content;
+    private transient volatile long lastAccess;
+    // what a lazy list keeps while its content isn't loaded
+    private transient Source source;
+    private transient int size;
+    private transient Map<String, List<String>> compatibilities; // distinct compatibilities per interface, joined by commas
+    private transient Map<String, Status> statuses;
+    // softwares still referenced elsewhere, e.g. by the software tree, favourites or configurations, get reused on reload
+    private transient Map<String, WeakReference<Software>> unloadedSoftwares;
     
     public SoftwareList(String name, String description) {
         super(name);
         setDescription(description);
+        content = new Content();
+    }
+    
+    /**
+     * Decode a software list written by {@link #write(CacheDataOutput)}.
+     */
+    public SoftwareList(CacheDataInput input) {
+        super(input);
+        content = new Content();
+        
+        int listSize = input.readInt();
+        int count = input.readInt();
+        List<Software> softwares = new ArrayList<>(count);
+        Map<String, Software> map = new HashMap<>(count * 4 / 3 + 1);
+        for (int i = 0; i < count; ++i) {
+            Software software = new Software(input);
+            softwares.add(software);
+            map.put(software.getName(), software);
+            if (i < listSize)
+                content.softwareMap.put(software.getName(), software);
+        }
+        softwares.forEach(software -> {
+            String parent = input.readString();
+            if (parent != null)
+                software.setParent(map.get(parent));
+        });
+        
+        for (int i = input.readInt(); i > 0; --i) {
+            String interfaceFormat = input.readString();
+            int size = input.readInt();
+            List<Software> interfaceSoftwares = new ArrayList<>(size);
+            for (int j = 0; j < size; ++j)
+                interfaceSoftwares.add(content.softwareMap.get(input.readString()));
+            content.interfaceSoftwareMap.put(interfaceFormat, interfaceSoftwares);
+        }
+        for (int i = input.readInt(); i > 0; --i)
+            content.softwareInterfaceMap.put(input.readString(), input.readStrings());
+    }
+    
+    /**
+     * Decode a lazy software list from the summary written by {@link #writeSummary(CacheDataOutput)}.
+     */
+    public SoftwareList(CacheDataInput input, Source source) {
+        super(input);
+        this.source = source;
+        
+        size = input.readInt();
+        compatibilities = new HashMap<>();
+        for (int i = input.readInt(); i > 0; --i)
+            compatibilities.put(input.readString(), input.readStrings());
+    }
+    
+    @Override
+    public void write(CacheDataOutput output) {
+        super.write(output);
+        Content content = getContent();
+        
+        // parents referenced through cloneof may not be part of the list
+        List<Software> softwares = new ArrayList<>(content.softwareMap.values());
+        content.softwareMap.values().stream().map(
+            Software::getParent
+        ).filter(
+            parent -> parent != null && !content.softwareMap.containsKey(parent.getName())
+        ).distinct().forEach(
+            softwares::add
+        );
+        
+        output.writeInt(content.softwareMap.size());
+        output.writeInt(softwares.size());
+        softwares.forEach(software -> software.write(output));
+        softwares.forEach(
+            software -> output.writeString(software.hasParent() ? software.getParent().getName() : null)
+        );
+        
+        output.writeInt(content.interfaceSoftwareMap.size());
+        content.interfaceSoftwareMap.forEach((interfaceFormat, interfaceSoftwares) -> {
+            output.writeString(interfaceFormat);
+            output.writeInt(interfaceSoftwares.size());
+            interfaceSoftwares.forEach(software -> output.writeString(software.getName()));
+        });
+        output.writeInt(content.softwareInterfaceMap.size());
+        content.softwareInterfaceMap.forEach((software, interfaceFormats) -> {
+            output.writeString(software);
+            output.writeStrings(interfaceFormats);
+        });
+    }
+    
+    /**
+     * Write what a lazy list needs to answer {@link #size()} and {@link #hasSoftwares(List, String)} without being loaded.
+     */
+    public synchronized void writeSummary(CacheDataOutput output) {
+        super.write(output);
+        
+        Content current = content;
+        output.writeInt(current != null ? current.softwareMap.size() : size);
+        Map<String, List<String>> summary = current != null ? summarise(current) : compatibilities;
+        output.writeInt(summary.size());
+        summary.forEach((interfaceFormat, compatibility) -> {
+            output.writeString(interfaceFormat);
+            output.writeStrings(compatibility);
+        });
+    }
+    
+    private static Map<String, List<String>> summarise(Content content) {
+        Map<String, List<String>> summary = new HashMap<>();
+        content.interfaceSoftwareMap.forEach((interfaceFormat, softwares) -> summary.put(
+            interfaceFormat, softwares.stream().map(
+                software -> software.getCompatibility() != null ? String.join(",", software.getCompatibility()) : null
+            ).distinct().collect(Collectors.toList())
+        ));
+        return summary;
+    }
+    
+    private Content getContent() {
+        lastAccess = System.nanoTime();
+        Content current = content;
+        if (current != null)
+            return current;
+        
+        boolean isLoading = false;
+        synchronized (this) {
+            current = content;
+            if (current == null) {
+                current = source.load(this).content;
+                if (unloadedSoftwares != null) {
+                    restore(current, unloadedSoftwares);
+                    unloadedSoftwares = null;
+                }
+                if (statuses != null) {
+                    Map<String, Software> softwareMap = current.softwareMap;
+                    statuses.forEach((name, status) -> {
+                        Software software = softwareMap.get(name);
+                        if (software != null)
+                            software.setStatus(status);
+                    });
+                    statuses = null;
+                }
+                content = current;
+                isLoading = true;
+            }
+        }
+        if (isLoading)
+            source.onLoaded(this);
+        return current;
+    }
+    
+    /**
+     * Put back the software instances which outlived the unloading of the list in place of their reloaded copies,
+     * so that software identity holds across unloading.
+     */
+    private static void restore(Content content, Map<String, WeakReference<Software>> unloadedSoftwares) {
+        Map<String, Software> softwareMap = content.softwareMap;
+        unloadedSoftwares.forEach((name, reference) -> {
+            Software software = reference.get();
+            if (software != null && softwareMap.containsKey(name))
+                softwareMap.put(name, software);
+        });
+        content.interfaceSoftwareMap.values().forEach(
+            softwares -> softwares.replaceAll(software -> softwareMap.getOrDefault(software.getName(), software))
+        );
+        softwareMap.values().stream().filter(Software::hasParent).forEach(software -> {
+            Software parent = softwareMap.get(software.getParent().getName());
+            if (parent != null)
+                software.setParent(parent);
+        });
+    }
+    
+    public boolean isLoaded() {
+        return content != null;
+    }
+    
+    public long getLastAccess() {
+        return lastAccess;
     }
     
+    /**
+     * Drop the softwares of a lazy list, their statuses being restored once the list gets loaded again.
+     * Softwares still referenced elsewhere keep being updated meanwhile and replace their copies on reload.
+     */
+    public synchronized void unload() {
+        Content current = content;
+        if (source == null || current == null)
+            return;
+        
+        size = current.softwareMap.size();
+        compatibilities = summarise(current);
+        statuses = new HashMap<>();
+        current.softwareMap.values().stream().filter(
+            software -> software.getStatus() != Status.UNKNOWN
+        ).forEach(
+            software -> statuses.put(software.getName(), software.getStatus())
+        );
+        unloadedSoftwares = new HashMap<>(size * 4 / 3 + 1);
+        current.softwareMap.forEach((name, software) -> unloadedSoftwares.put(name, new WeakReference<>(software)));
+        content = null;
+    }
+    
+    /**
+     * Set the status of a software without loading its list.
+     */
+    public synchronized void setStatus(String software, Status status) {
+        Content current = content;
+        if (current != null) {
+            Software item = current.softwareMap.get(software);
+            if (item != null)
+                item.setStatus(status);
+        } else {
+            if (statuses == null)
+                statuses = new HashMap<>();
+            statuses.put(software, status);
+            
+            WeakReference<Software> reference = unloadedSoftwares != null ? unloadedSoftwares.get(software) : null;
+            Software item = reference != null ? reference.get() : null;
+            if (item != null)
+                item.setStatus(status);
+        }
+    }
+
     public void addSoftware(Software software) {
-        softwareMap.put(software.getName(), software);
+        Content content = getContent();
+        content.indexes = null;
+        content.softwareMap.put(software.getName(), software);
         
         List<String> interfaceFormats = new ArrayList<>(1);
         
@@ -50,65 +378,75 @@ public class SoftwareList extends Item {
         ).distinct().forEach(interfaceFormat -> {
             interfaceFormats.add(interfaceFormat);
             
-            List<Software> softwares = interfaceSoftwareMap.get(interfaceFormat);
+            List<Software> softwares = content.interfaceSoftwareMap.get(interfaceFormat);
             if (softwares == null) {
                 softwares = new ArrayList<>();
-                interfaceSoftwareMap.put(interfaceFormat, softwares);
+                content.interfaceSoftwareMap.put(interfaceFormat, softwares);
             }
             softwares.add(software);
         });
-        softwareInterfaceMap.put(software.getName(), interfaceFormats);
+        content.softwareInterfaceMap.put(software.getName(), interfaceFormats);
         
         // remove information, becoming useless from this point onwards, to save cache memory space
         software.trimSoftwareParts();
     }
 
+    public Collection<Software> getSoftwares() {
+        return Collections.unmodifiableCollection(getContent().softwareMap.values());
+    }
+
     public Software getSoftware(String name) {
-        return softwareMap.get(name);
+        return getContent().softwareMap.get(name);
     }
     
     public List<Software> getSoftwares(List<String> interfaceFormats, String filter) {
+        if (interfaceFormats.size() == 1)
+            return getSoftwares(interfaceFormats.get(0), filter);
+        
         return interfaceFormats.stream().flatMap(
             interfaceFormat -> getSoftwares(interfaceFormat, filter).stream()
         ).collect(Collectors.toList());
     }
     
     private List<Software> getSoftwares(String interfaceFormat, String filter) {
-        List<Software> softwares = interfaceSoftwareMap.get(interfaceFormat);
-        
-        if (softwares != null)
-            if (filter != null)
-                if (filter.charAt(0) == '!') {
-                    final String unwantedFormat = filter.substring(1);
-                    
-                    return softwares.stream().filter(
-                        software -> {
-                            String[] compatibility = software.getCompatibility();
-                            return compatibility == null || Arrays.stream(compatibility).allMatch(
-                                format -> !format.equals(unwantedFormat)
-                            );
-                        }
-                    ).collect(Collectors.toList());
-                } else {
-                    final String expectedFormat = filter;
-                    
-                    return softwares.stream().filter(
-                        software -> {
-                            String[] compatibility = software.getCompatibility();
-                            return compatibility == null || Arrays.stream(compatibility).anyMatch(
-                                format -> format.equals(expectedFormat)
-                            );
-                        }
-                    ).collect(Collectors.toList());
-                }
-            else
-                return softwares;
+        Index index = getContent().getIndex(interfaceFormat);
+        
+        if (index != null)
+            return index.get(filter);
         else
-            return new ArrayList<>();
+            return List.of();
+    }
+    
+    private static boolean isCompatible(String[] compatibility, String filter) {
+        if (filter == null || compatibility == null)
+            return true;
+        else if (filter.charAt(0) == '!') {
+            final String unwantedFormat = filter.substring(1);
+            return Arrays.stream(compatibility).allMatch(format -> !format.equals(unwantedFormat));
+        } else
+            return Arrays.stream(compatibility).anyMatch(format -> format.equals(filter));
+    }
+    
+    /**
+     * Same as checking that {@link #getSoftwares(List, String)} isn't empty, without loading a lazy list.
+     */
+    public boolean hasSoftwares(List<String> interfaceFormats, String filter) {
+        Map<String, List<String>> summary;
+        synchronized (this) {
+            summary = content == null ? compatibilities : null;
+        }
+        if (summary == null)
+            return interfaceFormats.stream().anyMatch(interfaceFormat -> !getSoftwares(interfaceFormat, filter).isEmpty());
+        
+        return interfaceFormats.stream().map(summary::get).filter(
+            compatibilities -> compatibilities != null
+        ).flatMap(List::stream).anyMatch(
+            compatibility -> isCompatible(compatibility != null ? compatibility.split(",") : null, filter)
+        );
     }
 
     public String getInterfaceFormat(String software) {
-        List<String> interfaceFormats = softwareInterfaceMap.get(software);
+        List<String> interfaceFormats = getContent().softwareInterfaceMap.get(software);
         
         if (interfaceFormats != null && interfaceFormats.size() > 0)
             return interfaceFormats.get(0);
@@ -117,6 +455,7 @@ public class SoftwareList extends Item {
     }
     
     public int size() {
-        return softwareMap.size();
+        Content current = content;
+        return current != null ? current.softwareMap.size() : size;
     }
 }
@@ -17,6 +17,9 @@
  */
 package net.babelsoft.negatron.model.item;
 
+import net.babelsoft.negatron.io.cache.CacheDataInput;
+import net.babelsoft.negatron.io.cache.CacheDataOutput;
+
 /**
  *
  * @author capan
@@ -31,6 +34,17 @@ public class SoftwarePart extends Item {
         this.interfaceFormat = interfaceFormat;
     }
     
+    public SoftwarePart(CacheDataInput input) {
+        super(input);
+        interfaceFormat = input.readString();
+    }
+    
+    @Override
+    public void write(CacheDataOutput output) {
+        super.write(output);
+        output.writeString(interfaceFormat);
+    }
+    
     public String getInterfaceFormat() {
         return interfaceFormat;
     }
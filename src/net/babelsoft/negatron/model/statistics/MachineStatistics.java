@@ -22,7 +22,7 @@ import net.babelsoft.negatron.model.ControllerType;
 import net.babelsoft.negatron.model.item.Machine;
 
 /**
- *
+ * Adding machines isn't thread-safe: concurrent parsers should each fill their own instance and merge them afterwards.
  * @author capan
  */
 public class MachineStatistics implements Serializable {
@@ -74,6 +74,21 @@ public class MachineStatistics implements Serializable {
             ++deviceCount;
     }
     
+    /**
+     * Add up the counts of statistics collected apart, e.g. by a single parser.
+     */
+    public synchronized void merge(MachineStatistics statistics) {
+        deviceCount += statistics.deviceCount;
+        gamblingPinballParentCount += statistics.gamblingPinballParentCount;
+        arcadeGameParentCount += statistics.arcadeGameParentCount;
+        calculatorComputerParentCount += statistics.calculatorComputerParentCount;
+        consoleParentCount += statistics.consoleParentCount;
+        gamblingPinballCloneCount += statistics.gamblingPinballCloneCount;
+        arcadeGameCloneCount += statistics.arcadeGameCloneCount;
+        calculatorComputerCloneCount += statistics.calculatorComputerCloneCount;
+        consoleCloneCount += statistics.consoleCloneCount;
+    }
+    
     public int getDeviceCount() {
         return deviceCount;
     }
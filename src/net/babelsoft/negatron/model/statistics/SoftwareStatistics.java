@@ -28,11 +28,13 @@ import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collector;
+import net.babelsoft.negatron.io.cache.CacheDataInput;
+import net.babelsoft.negatron.io.cache.CacheDataOutput;
 import net.babelsoft.negatron.model.item.Software;
 import net.babelsoft.negatron.model.item.SoftwarePart;
 
 /**
- *
+ * Adding softwares isn't thread-safe: each loader fills its own instance which then gets merged into the shared one.
  * @author capan
  */
 public class SoftwareStatistics implements Serializable {
@@ -80,6 +82,56 @@ public class SoftwareStatistics implements Serializable {
         }
     ;
 
+    public SoftwareStatistics() { }
+    
+    public SoftwareStatistics(CacheDataInput input) {
+        parentCount = input.readInt();
+        cloneCount = input.readInt();
+        readCounts(input, parentCountByType);
+        readCounts(input, cloneCountByType);
+        readListCounts(input, parentCountByListByType);
+        readListCounts(input, cloneCountByListByType);
+    }
+    
+    private static void readCounts(CacheDataInput input, ConcurrentMap<String, AtomicInteger> countByType) {
+        for (int i = input.readInt(); i > 0; --i)
+            countByType.put(input.readString(), new AtomicInteger(input.readInt()));
+    }
+    
+    private static void readListCounts(CacheDataInput input, ConcurrentMap<String, ConcurrentMap<String, AtomicInteger>> countByListByType) {
+        for (int i = input.readInt(); i > 0; --i) {
+            String softwareList = input.readString();
+            ConcurrentMap<String, AtomicInteger> countByType = new ConcurrentHashMap<>();
+            readCounts(input, countByType);
+            countByListByType.put(softwareList, countByType);
+        }
+    }
+    
+    private static void writeCounts(CacheDataOutput output, ConcurrentMap<String, AtomicInteger> countByType) {
+        output.writeInt(countByType.size());
+        countByType.forEach((type, count) -> {
+            output.writeString(type);
+            output.writeInt(count.get());
+        });
+    }
+    
+    private static void writeListCounts(CacheDataOutput output, ConcurrentMap<String, ConcurrentMap<String, AtomicInteger>> countByListByType) {
+        output.writeInt(countByListByType.size());
+        countByListByType.forEach((softwareList, countByType) -> {
+            output.writeString(softwareList);
+            writeCounts(output, countByType);
+        });
+    }
+    
+    public void write(CacheDataOutput output) {
+        output.writeInt(parentCount);
+        output.writeInt(cloneCount);
+        writeCounts(output, parentCountByType);
+        writeCounts(output, cloneCountByType);
+        writeListCounts(output, parentCountByListByType);
+        writeListCounts(output, cloneCountByListByType);
+    }
+    
     private int remove(
         String softwareList,
         final ConcurrentMap<String, ConcurrentMap<String, AtomicInteger>> softwareListTypeCount,
@@ -101,7 +153,7 @@ public class SoftwareStatistics implements Serializable {
         return 0;
     }
 
-    public void remove(String softwareList) {
+    public synchronized void remove(String softwareList) {
         cloneCount -= remove(softwareList, cloneCountByListByType, cloneCountByType);
         parentCount -= remove(softwareList, parentCountByListByType, parentCountByType);
     }
@@ -133,6 +185,33 @@ public class SoftwareStatistics implements Serializable {
         });
     }
     
+    private static void merge(ConcurrentMap<String, AtomicInteger> source, ConcurrentMap<String, AtomicInteger> target) {
+        source.forEach(
+            (type, count) -> target.computeIfAbsent(type, key -> new AtomicInteger()).addAndGet(count.get())
+        );
+    }
+    
+    private static void mergeLists(
+        ConcurrentMap<String, ConcurrentMap<String, AtomicInteger>> source,
+        ConcurrentMap<String, ConcurrentMap<String, AtomicInteger>> target
+    ) {
+        source.forEach(
+            (softwareList, countByType) -> merge(countByType, target.computeIfAbsent(softwareList, key -> new ConcurrentHashMap<>()))
+        );
+    }
+    
+    /**
+     * Add up the counts of statistics collected apart, e.g. by a single loader.
+     */
+    public synchronized void merge(SoftwareStatistics statistics) {
+        parentCount += statistics.parentCount;
+        cloneCount += statistics.cloneCount;
+        merge(statistics.parentCountByType, parentCountByType);
+        merge(statistics.cloneCountByType, cloneCountByType);
+        mergeLists(statistics.parentCountByListByType, parentCountByListByType);
+        mergeLists(statistics.cloneCountByListByType, cloneCountByListByType);
+    }
+    
     public int getParentCount() {
         return parentCount;
     }
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Keep track of the number of bytes consumed from the underlying stream,
+ * e.g. to report progress while parsing the output of a MAME process.<br />
+ * The count can be read from any thread.
+ * @author capan
+ */
+public class CountingInputStream extends FilterInputStream {
+    
+    private volatile long count;
+    private long mark;
+    
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        int result = in.read();
+        if (result >= 0)
+            ++count;
+        return result;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int result = in.read(b, off, len);
+        if (result > 0)
+            count += result;
+        return result;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        long result = in.skip(n);
+        count += result;
+        return result;
+    }
+    
+    @Override
+    public synchronized void mark(int readlimit) {
+        in.mark(readlimit);
+        mark = count;
+    }
+    
+    @Override
+    public synchronized void reset() throws IOException {
+        in.reset();
+        count = mark;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.util;
+
+/**
+ * Deduplicate strings while parsing, without allocating anything when the value has already been met.<br />
+ * Unlike {@link String#intern()}, the pool only lives as long as the parser using it. Not thread-safe.
+ * @author capan
+ */
+public final class StringPool {
+    
+    private String[] table = new String[1 << 12];
+    private int size;
+    
+    public String intern(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset, max = offset + length; i < max; ++i)
+            hash = 31 * hash + chars[i];
+        
+        int mask = table.length - 1;
+        for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+            String value = table[i];
+            if (value == null)
+                return add(i, new String(chars, offset, length));
+            if (value.hashCode() == hash && value.length() == length) {
+                int j = 0;
+                while (j < length && value.charAt(j) == chars[offset + j])
+                    ++j;
+                if (j == length)
+                    return value;
+            }
+        }
+    }
+    
+    public String intern(CharSequence chars) {
+        int length = chars.length();
+        int hash = 0;
+        for (int i = 0; i < length; ++i)
+            hash = 31 * hash + chars.charAt(i);
+        
+        int mask = table.length - 1;
+        for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+            String value = table[i];
+            if (value == null)
+                return add(i, chars.toString());
+            if (value.hashCode() == hash && value.contentEquals(chars))
+                return value;
+        }
+    }
+    
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+    
+    private String add(int index, String value) {
+        table[index] = value;
+        if (++size > table.length >> 1) {
+            // keep the table at most half full so that probe sequences stay short
+            String[] oldTable = table;
+            table = new String[oldTable.length << 1];
+            int mask = table.length - 1;
+            for (String string : oldTable) if (string != null) {
+                int i = spread(string.hashCode()) & mask;
+                while (table[i] != null)
+                    i = (i + 1) & mask;
+                table[i] = string;
+            }
+        }
+        return value;
+    }
+}
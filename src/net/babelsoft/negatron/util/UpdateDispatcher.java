@@ -0,0 +1,137 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.util;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+/**
+ * Apply the model and progress updates posted by background threads on the JavaFX thread, pulse after pulse.<br />
+ * Updates of the same field of the same item are coalesced so that only the latest value gets applied,
+ * and each pulse only spends a limited time on them so that rendering and input handling don't hitch.
+ * @author capan
+ */
+public enum UpdateDispatcher {
+    Instance;
+    
+    /**
+     * A field of the items to update, one instance per field, which identifies the updates to coalesce.
+     */
+    public static final class Field<T, V> {
+        private final BiConsumer<T, V> setter;
+        
+        public Field(BiConsumer<T, V> setter) {
+            this.setter = setter;
+        }
+    }
+    
+    private static final class Key {
+        private final Object item;
+        private final Field<?, ?> field;
+        
+        Key(Object item, Field<?, ?> field) {
+            this.item = item;
+            this.field = field;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key key && key.item == item && key.field == field;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(item) + System.identityHashCode(field);
+        }
+    }
+    
+    private static final long PULSE_BUDGET = 4_000_000; // in ns, a quarter of a 60 Hz frame
+    private static final Object NULL = new Object();
+    
+    // a key is queued once per pending value, which later updates replace until the key gets drained
+    private final Queue<Key> keys = new ConcurrentLinkedQueue<>();
+    private final Map<Key, Object> values = new ConcurrentHashMap<>();
+    private final AtomicBoolean isScheduled = new AtomicBoolean();
+    private AnimationTimer timer; // only runs while updates are pending
+    private volatile int lastPulseUpdateCount;
+    
+    /**
+     * Set a field of an item on the JavaFX thread, during one of the next pulses. Can be called from any thread.
+     */
+    public <T, V> void post(T item, Field<? super T, ? super V> field, V value) {
+        Key key = new Key(item, field);
+        if (values.put(key, value != null ? value : NULL) == null)
+            keys.add(key);
+        
+        if (isScheduled.compareAndSet(false, true))
+            Platform.runLater(this::start);
+    }
+    
+    private void start() {
+        if (timer == null)
+            timer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    drain();
+                }
+            };
+        timer.start();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        long deadline = System.nanoTime() + PULSE_BUDGET;
+        int count = 0;
+        
+        for (Key key = keys.poll(); key != null; key = keys.poll()) {
+            Object value = values.remove(key);
+            ((Field<Object, Object>) key.field).setter.accept(key.item, value != NULL ? value : null);
+            if ((++count & 0x3F) == 0 && System.nanoTime() > deadline)
+                break;
+        }
+        lastPulseUpdateCount = count;
+        
+        if (keys.isEmpty()) {
+            timer.stop();
+            isScheduled.set(false);
+            // catch up with updates posted while stopping
+            if (!keys.isEmpty() && isScheduled.compareAndSet(false, true))
+                timer.start();
+        }
+    }
+    
+    /**
+     * @return the number of updates applied during the latest pulse
+     */
+    public int getLastPulseUpdateCount() {
+        return lastPulseUpdateCount;
+    }
+    
+    /**
+     * @return the number of updates still to be applied, once coalesced
+     */
+    public int getQueueDepth() {
+        return values.size();
+    }
+}
@@ -102,6 +102,10 @@ public class EmulatedItemTreePane<T extends EmulatedItem<T>> extends VBox {
         controller.setItems(emulatedItems);
     }
     
+    public void appendItems(List<T> emulatedItems) {
+        controller.appendItems(emulatedItems);
+    }
+    
     public void setOnAction(Delegate delegate) {
         tree.setOnAction(delegate);
     }
@@ -220,6 +220,10 @@ public class EmulatedItemTreeView<T extends EmulatedItem<T>> extends NegatronTre
         this.shortcutMap = shortcutMap;
     }
     
+    public Map<Character, Collection<TreeItem<T>>> getShortcutMap() {
+        return shortcutMap;
+    }
+    
     public void setMap(Map<String, SortableTreeItem<T>> map) {
         this.map = map;
     }
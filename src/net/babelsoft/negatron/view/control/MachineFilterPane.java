@@ -18,6 +18,7 @@
 package net.babelsoft.negatron.view.control;
 
 import net.babelsoft.negatron.controller.MachineFilterPaneController;
+import net.babelsoft.negatron.model.SoftwareSearchIndex;
 import net.babelsoft.negatron.model.item.Machine;
 
 /**
@@ -29,4 +30,8 @@ public class MachineFilterPane extends FilterPane<Machine, MachineFilterPaneCont
     public MachineFilterPane() {
         super("fxml/MachineFilterPane.fxml");
     }
+    
+    public void setSearchIndex(SoftwareSearchIndex searchIndex) {
+        controller.setSearchIndex(searchIndex);
+    }
 }
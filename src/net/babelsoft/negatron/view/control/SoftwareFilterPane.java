@@ -17,7 +17,9 @@
  */
 package net.babelsoft.negatron.view.control;
 
+import java.util.List;
 import net.babelsoft.negatron.controller.SoftwareFilterPaneController;
+import net.babelsoft.negatron.model.SoftwareSearchIndex;
 import net.babelsoft.negatron.model.item.Software;
 
 /**
@@ -33,4 +35,12 @@ public class SoftwareFilterPane extends FilterPane<Software, SoftwareFilterPaneC
     public void setConfigurationId(String configurationId) {
         controller.setConfigurationId(configurationId);
     }
+    
+    public void setSearchIndex(SoftwareSearchIndex searchIndex) {
+        controller.setSearchIndex(searchIndex);
+    }
+    
+    public void setSoftwareLists(List<String> softwareLists) {
+        controller.setSoftwareLists(softwareLists);
+    }
 }
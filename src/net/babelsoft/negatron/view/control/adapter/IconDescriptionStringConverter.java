@@ -54,7 +54,9 @@ public class IconDescriptionStringConverter extends StringConverter<IconDescript
             return null;
         }
 
-        IconDescription res = new IconDescription(value, buffer.getIcon());
+        IconDescription res = buffer.getAtlasIcon() != null ?
+            new IconDescription(value, buffer.getAtlasIcon()) :
+            new IconDescription(value, buffer.getIcon());
         buffer = null;
         return res;
     }
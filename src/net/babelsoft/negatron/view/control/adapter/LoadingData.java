@@ -17,6 +17,7 @@
  */
 package net.babelsoft.negatron.view.control.adapter;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import javafx.application.Platform;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
@@ -25,6 +26,7 @@ import javafx.scene.image.ImageView;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.GridPane;
 import net.babelsoft.negatron.theme.Language;
+import net.babelsoft.negatron.util.UpdateDispatcher;
 
 /**
  *
@@ -32,10 +34,12 @@ import net.babelsoft.negatron.theme.Language;
  */
 public class LoadingData {
     
+    private static final UpdateDispatcher.Field<ProgressBar, Double> PROGRESS = new UpdateDispatcher.Field<>(ProgressBar::setProgress);
+    
     private final ProgressBar bar;
     private final AnchorPane iconPane;
     private final double totalCount;
-    private int processedTotalCount;
+    private final AtomicInteger processedTotalCount = new AtomicInteger();
 
     public LoadingData(GridPane grid, String id, int rowIndex, int totalCount) {
         this.totalCount = totalCount;
@@ -55,13 +59,15 @@ public class LoadingData {
         });
     }
 
+    /**
+     * Can be called from any thread, the progress bar being updated during the next pulse.
+     */
     public void incrementProcessed(int processed) {
-        processedTotalCount += processed;
-        bar.setProgress(processedTotalCount / totalCount);
+        UpdateDispatcher.Instance.post(bar, PROGRESS, processedTotalCount.addAndGet(processed) / totalCount);
     }
 
     public void end() {
-        bar.setProgress(1.0);
+        UpdateDispatcher.Instance.post(bar, PROGRESS, 1.0);
         Platform.runLater(() -> iconPane.getChildren().set(
             0, new ImageView("/net/babelsoft/negatron/resource/icon/status/dialog-ok-apply.png")
         ));
@@ -18,8 +18,11 @@
 package net.babelsoft.negatron.view.control.tree;
 
 import javafx.scene.image.ImageView;
+import net.babelsoft.negatron.io.cache.IconResolver;
+import net.babelsoft.negatron.model.AtlasIcon;
 import net.babelsoft.negatron.model.IconDescription;
 import net.babelsoft.negatron.model.item.EmulatedItem;
+import net.babelsoft.negatron.model.item.Machine;
 
 /**
  *
@@ -27,6 +30,8 @@ import net.babelsoft.negatron.model.item.EmulatedItem;
  */
 public class IconDescriptionTreeTableCell<T extends EmulatedItem<T>> extends NegatronTreeTableCell<T, IconDescription> {
     
+    private final ImageView imageView = new ImageView();
+    
     @Override
     protected void updateItem(IconDescription item, boolean empty) {
         super.updateItem(item, empty);
@@ -36,7 +41,20 @@ public class IconDescriptionTreeTableCell<T extends EmulatedItem<T>> extends Neg
             setGraphic(null);
         } else {
             setText(item.getDescription());
-            setGraphic(new ImageView(item.getIcon()));
+            
+            // atlas icons are rendered as a viewport of their atlas page, whose texture is shared by all the cells
+            AtlasIcon atlasIcon = item.getAtlasIcon();
+            if (atlasIcon == null && getTableRow().getItem() instanceof Machine machine)
+                IconResolver.Instance.request(machine);
+            
+            if (atlasIcon != null) {
+                imageView.setImage(atlasIcon.getAtlas());
+                imageView.setViewport(atlasIcon.getViewport());
+            } else {
+                imageView.setImage(item.getIcon());
+                imageView.setViewport(null);
+            }
+            setGraphic(imageView);
         }
     }
 }
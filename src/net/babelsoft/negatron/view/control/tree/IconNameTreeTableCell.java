@@ -24,6 +24,7 @@ import javafx.scene.control.TreeTableColumn;
 import javafx.scene.image.ImageView;
 import javafx.util.StringConverter;
 import net.babelsoft.negatron.controller.FavouriteTreePaneController;
+import net.babelsoft.negatron.io.cache.IconResolver;
 import net.babelsoft.negatron.model.IconDescription;
 import net.babelsoft.negatron.model.favourites.Favourite;
 import net.babelsoft.negatron.model.favourites.Separator;
@@ -168,7 +169,12 @@ public class IconNameTreeTableCell extends FavouriteTreeTableCell<IconDescriptio
         
         if (empty || item == null) {
             CellUtils.updateItem(this, getConverter(), null, getSeparator(), textField);
-        } else
+        } else {
+            Favourite favourite = getTableRow().getItem();
+            if (favourite != null && favourite.getMachine() != null)
+                IconResolver.Instance.request(favourite.getMachine());
+            
             CellUtils.updateItem(this, getConverter(), null, !isEditing() ? imageView : null, textField);
+        }
     }
 }
@@ -96,4 +96,51 @@ public final class TreeTableDataFiller {
         tree.setShortcutMap(shortcutMap);
         tree.setMap(itemMap);
     }
+    
+    /**
+     * Add items to a tree while their list is still being built, as a quick preview until {@link #fill} is called with the complete list.
+     * Items aren't reset and clones may come before their parent, in which case the parent placeholder gets replaced once it's met.
+     */
+    public static <T extends EmulatedItem<T>> void append(
+        EmulatedItemTreeView<T> tree, List<T> items, boolean mustFlatten
+    ) {
+        Map<String, SortableTreeItem<T>> itemMap = tree.getMap();
+        if (itemMap == null) {
+            itemMap = new HashMap<>();
+            tree.setMap(itemMap);
+            tree.setShortcutMap(new HashMap<>());
+        }
+        final Map<Character, Collection<TreeItem<T>>> shortcutMap = tree.getShortcutMap();
+        final SortableTreeItem<T> root = tree.getSortableRoot();
+        
+        final Comparator<? super TreeItem<T>> shortcutComparator = (item1, item2) ->
+            item1.getValue().getName().compareTo( item2.getValue().getName() )
+        ;
+        
+        for (T item : items) {
+            SortableTreeItem<T> currentTreeItem = itemMap.get(item.getName());
+            if (currentTreeItem == null) {
+                currentTreeItem = new SortableTreeItem<>(item);
+                itemMap.put(item.getName(), currentTreeItem);
+                if (mustFlatten || !item.hasParent())
+                    root.getInternalChildren().add(currentTreeItem);
+            } else
+                currentTreeItem.setValue(item); // replace placeholder
+            
+            if (!mustFlatten && item.hasParent()) {
+                String parentName = item.getParent().getName();
+                SortableTreeItem<T> parentTreeItem = itemMap.get(parentName);
+                if (parentTreeItem == null) {
+                    parentTreeItem = new SortableTreeItem<>(item.getParent());
+                    itemMap.put(parentName, parentTreeItem);
+                    root.getInternalChildren().add(parentTreeItem);
+                }
+                parentTreeItem.getInternalChildren().add(currentTreeItem);
+            }
+            
+            shortcutMap.computeIfAbsent(
+                item.getName().charAt(0), index -> new TreeSet<>(shortcutComparator)
+            ).add(currentTreeItem);
+        }
+    }
 }
@@ -0,0 +1,187 @@
+/*
+ * This file is part of Negatron.
+ * Copyright (C) 2015-2018 BabelSoft S.A.S.U.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.babelsoft.negatron.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import net.babelsoft.negatron.io.cache.CacheDataInput;
+import net.babelsoft.negatron.io.cache.CacheDataOutput;
+import net.babelsoft.negatron.model.SoftwareSearchIndex.Field;
+import net.babelsoft.negatron.model.item.Software;
+import net.babelsoft.negatron.model.item.SoftwareList;
+import net.babelsoft.negatron.model.item.SoftwarePart;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check index lookups against a plain scan of every software.
+ * @author capan
+ */
+public class SoftwareSearchIndexTest {
+    
+    private static final int LIST_COUNT = 4;
+    private static final int SOFTWARE_COUNT = 1500;
+    
+    private final Random random = new Random(42);
+    private final List<SoftwareList> softwareLists = new ArrayList<>();
+    private final SoftwareSearchIndex index = new SoftwareSearchIndex();
+    
+    public SoftwareSearchIndexTest() {
+        for (int i = 0; i < LIST_COUNT; ++i) {
+            SoftwareList softwareList = new SoftwareList("list" + i, "List " + i);
+            for (int j = 0; j < SOFTWARE_COUNT; ++j) {
+                // a small alphabet makes most sequences shared by many softwares and probe past each other in the table
+                Software software = new Software(word("abcde", 4, 8) + j, softwareList.getName());
+                software.setDescription(word("abcdefgh", 3, 12) + " " + word("xyz", 2, 6));
+                software.setPublisher(word("abcdefghijklmnopqrstuvwxyz", 3, 10));
+                software.setYear(Integer.toString(1980 + random.nextInt(30)));
+                software.addSoftwarePart(new SoftwarePart("cart", "test_cart"));
+                softwareList.addSoftware(software);
+            }
+            softwareLists.add(softwareList);
+            index.add(softwareList);
+        }
+    }
+    
+    private String word(String alphabet, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; ++i)
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return sb.toString();
+    }
+    
+    /**
+     * @param criteria values with the field to look them up in, or a null field for any of them
+     */
+    private Map<String, Set<String>> scan(List<Map.Entry<Field, String>> criteria) {
+        Map<String, Set<String>> result = new HashMap<>();
+        for (SoftwareList softwareList : softwareLists)
+            for (Software software : softwareList.getSoftwares()) {
+                boolean matches = criteria.stream().allMatch(criterion -> {
+                    String value = SoftwareSearchIndex.normalise(criterion.getValue());
+                    return criterion.getKey() != null
+                        ? fieldValue(software, criterion.getKey()).contains(value)
+                        : Stream.of(Field.values()).anyMatch(field -> fieldValue(software, field).contains(value));
+                });
+                if (matches)
+                    result.computeIfAbsent(softwareList.getName(), name -> new HashSet<>()).add(software.getName());
+            }
+        return result;
+    }
+    
+    private static String fieldValue(Software software, Field field) {
+        return SoftwareSearchIndex.normalise(switch (field) {
+            case NAME -> software.getName();
+            case DESCRIPTION -> software.getDescription();
+            case PUBLISHER -> software.getCompany();
+            case YEAR -> software.getYear();
+        });
+    }
+    
+    private static Map<String, Set<String>> copy(Map<String, Set<String>> result) {
+        Map<String, Set<String>> copy = new HashMap<>();
+        result.forEach((softwareList, names) -> copy.put(softwareList, new HashSet<>(names)));
+        return copy;
+    }
+    
+    @Test
+    public void testQueryMatchesScan() {
+        for (int i = 0; i < 300; ++i) {
+            String query = switch (i % 4) {
+                case 0 -> word("abcde", 1, 5);
+                case 1 -> word("abcdefgh", 2, 4) + " " + word("xyz", 1, 3);
+                case 2 -> word("abcdefghijklmnopqrstuvwxyz", 3, 4);
+                default -> Integer.toString(1980 + random.nextInt(30));
+            };
+            List<Map.Entry<Field, String>> criteria = new ArrayList<>();
+            for (String word : query.split(" "))
+                criteria.add(new SimpleEntry<>(null, word));
+            assertEquals(scan(criteria), copy(index.search(query)), query);
+        }
+    }
+    
+    @Test
+    public void testFieldCriteriaMatchScan() {
+        for (int i = 0; i < 300; ++i) {
+            Map<Field, String> criteria = new HashMap<>();
+            criteria.put(Field.NAME, word("abcde", 1, 4));
+            if (i % 2 == 0)
+                criteria.put(Field.DESCRIPTION, word("xyz", 1, 3));
+            if (i % 3 == 0)
+                criteria.put(Field.YEAR, "19" + (8 + random.nextInt(2)));
+            assertEquals(scan(new ArrayList<>(criteria.entrySet())), copy(index.search(criteria, null)), criteria.toString());
+        }
+    }
+    
+    @Test
+    public void testSequencesMatchScan() {
+        // rare sequences are the ones whose postings get used, and colliding ones move around when the table grows
+        Set<String> sequences = new HashSet<>();
+        for (SoftwareList softwareList : softwareLists) {
+            int i = 0;
+            for (Software software : softwareList.getSoftwares())
+                if (i++ % 4 == 0) {
+                    String publisher = SoftwareSearchIndex.normalise(software.getCompany());
+                    for (int k = 0; k + 3 <= publisher.length(); ++k)
+                        sequences.add(publisher.substring(k, k + 3));
+                }
+        }
+        for (String sequence : sequences)
+            assertEquals(scan(List.of(new SimpleEntry<>(null, sequence))), copy(index.search(sequence)), sequence);
+    }
+    
+    @Test
+    public void testDecodedIndexMatchesScan() throws IOException {
+        CacheDataOutput output = new CacheDataOutput();
+        index.write(output);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        output.writeTo(stream);
+        SoftwareSearchIndex decoded = new SoftwareSearchIndex(new CacheDataInput(ByteBuffer.wrap(stream.toByteArray())));
+        
+        // lists added before the first query replace their persisted version rather than being overwritten by it
+        SoftwareList softwareList = new SoftwareList("list0", "List 0");
+        Software software = new Software("replacement", softwareList.getName());
+        software.addSoftwarePart(new SoftwarePart("cart", "test_cart"));
+        softwareList.addSoftware(software);
+        softwareLists.set(0, softwareList);
+        decoded.add(softwareList);
+        
+        for (int i = 0; i < 100; ++i) {
+            String query = word("abcde", 1, 5);
+            assertEquals(scan(List.of(new SimpleEntry<>(null, query))), copy(decoded.search(query)), query);
+        }
+        assertEquals(scan(List.of(new SimpleEntry<>(Field.NAME, "replacement"))), copy(decoded.search(Map.of(Field.NAME, "replacement"), null)), "replacement");
+    }
+    
+    @Test
+    public void testBlankQuery() {
+        assertNull(index.search("  "));
+    }
+}